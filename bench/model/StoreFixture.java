@@ -0,0 +1,128 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * What the benchmarks and the stress harness share: the TaskStore working
+ * in a temporary directory of its own, so nothing is written to the
+ * working directory, and the tasks they fill it with.
+ *
+ * The bench source root holds code that exercises the application but is
+ * not part of it; the application is built from the other source roots.
+ * Its classes sit in the packages they exercise, so they can reach what
+ * those packages keep to themselves.
+ *
+ * Saves are not forced to disk (Durability NONE): the runs measure the
+ * store, not the disk.
+ */
+public final class StoreFixture implements AutoCloseable {
+
+    /** Due date of the first generated task; the others spread over the 400 days from it. */
+    public static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    private static final String FILE = "tasks.json";
+
+    private final Path dir;
+    private final TaskStore store = TaskStore.getInstance();
+
+    private StoreFixture(String name) throws IOException {
+        dir = Files.createTempDirectory(name);
+        store.setDurability(TaskStore.Durability.NONE);
+    }
+
+    /**
+     * Opens the store on a snapshot file in a new temporary directory, with
+     * a mutation log, the way the application runs.
+     *
+     * @param name prefix of the directory's name
+     * @return the fixture; close it to remove the directory
+     */
+    public static StoreFixture opened(String name) throws IOException {
+        StoreFixture f = new StoreFixture(name);
+        if (!f.store.open(f.snapshotFile())) throw new IllegalStateException("cannot open " + f.snapshotFile());
+        return f;
+    }
+
+    /**
+     * Loads the store from a snapshot file in a new temporary directory,
+     * without a log: background saves then rewrite that file, and the store
+     * can be loaded again as often as needed.
+     *
+     * @param name prefix of the directory's name
+     * @return the fixture; close it to remove the directory
+     */
+    public static StoreFixture loaded(String name) throws IOException {
+        StoreFixture f = new StoreFixture(name);
+        if (!f.store.loadFromJson(f.snapshotFile())) throw new IllegalStateException("cannot load " + f.snapshotFile());
+        return f;
+    }
+
+    /** @return the store */
+    public TaskStore store() { return store; }
+
+    /** @return the temporary directory */
+    public Path dir() { return dir; }
+
+    /** @return the snapshot file the store was opened or loaded from */
+    public Path snapshotFile() { return dir.resolve(FILE); }
+
+    /**
+     * Returns a file in the temporary directory, for exports and the like.
+     *
+     * @param name the file's name
+     * @return its path; the file is removed with the directory
+     */
+    public Path file(String name) { return dir.resolve(name); }
+
+    /**
+     * Returns the i-th generated task: titled "Task i", a third of them
+     * without a due date, every other one completed.
+     *
+     * @param i the task's number
+     * @return a new task with a new id
+     */
+    public static Task task(int i) {
+        return task(i, "Task " + i);
+    }
+
+    /**
+     * Returns the i-th generated task with another title.
+     *
+     * @param i the task's number
+     * @param title the title
+     * @return a new task with a new id
+     */
+    public static Task task(int i, String title) {
+        LocalDate due = (i % 3 == 0) ? null : FIRST_DAY.plusDays(i % 400);
+        return new Task(new TaskId(), title, due, i % 2 == 0);
+    }
+
+    /**
+     * Returns the generated tasks from one number up to another.
+     *
+     * @param from the first task's number
+     * @param to the number after the last task's
+     * @return the tasks, in order
+     */
+    public static List<Task> tasks(int from, int to) {
+        List<Task> tasks = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) tasks.add(task(i));
+        return tasks;
+    }
+
+    /** Closes the store and removes the directory with everything in it. */
+    @Override
+    public void close() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+}
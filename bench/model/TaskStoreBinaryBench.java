@@ -0,0 +1,106 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Benchmark of the binary snapshot format against JSON: saves the same
+ * tasks both ways, then compares the file sizes and how long each file
+ * takes to load, through the stream loaders and through
+ * {@link TaskStore#loadMapped(Path)}.
+ *
+ * A load includes rebuilding the indexes, as it does when the application
+ * starts, and that takes most of the time, so the parsers are also timed
+ * on their own: those ratios are the difference the format itself makes.
+ *
+ * Run with {@code java model.TaskStoreBinaryBench [tasks] [rounds]}; every
+ * load is timed over the given number of rounds and the fastest one is
+ * reported. The exit status is 1 if the binary file is not smaller than the
+ * JSON one or loads or parses more slowly.
+ */
+public final class TaskStoreBinaryBench {
+
+    private TaskStoreBinaryBench() {}
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+
+        StoreFixture fixture = StoreFixture.loaded("taskstore-binary");
+        TaskStore store = fixture.store();
+        Path json = fixture.snapshotFile();
+        Path binary = fixture.file("tasks.bin");
+
+        store.addAll(StoreFixture.tasks(0, size));
+        if (!store.saveToJson(json) || !store.saveBinary(binary)) throw new IllegalStateException("save failed");
+
+        long jsonBytes = Files.size(json), binaryBytes = Files.size(binary);
+        System.out.printf("%,d tasks%n", size);
+        System.out.printf("  JSON   %,13d bytes%n", jsonBytes);
+        System.out.printf("  binary %,13d bytes (%.2fx the JSON)%n", binaryBytes, (double) binaryBytes / jsonBytes);
+
+        long parseJson = fastest(rounds, size, () -> parseJson(json));
+        long parseBinary = fastest(rounds, size, () -> parseBinary(binary));
+        System.out.printf("  parse JSON          %6d ms%n", parseJson);
+        System.out.printf("  parse binary        %6d ms (%.2fx the JSON)%n", parseBinary, (double) parseBinary / parseJson);
+
+        long fromJson = fastest(rounds, size, () -> loaded(store, () -> store.loadFromJson(json)));
+        long fromBinary = fastest(rounds, size, () -> loaded(store, () -> store.loadBinary(binary)));
+        long mappedJson = fastest(rounds, size, () -> loaded(store, () -> store.loadMapped(json)));
+        long mappedBinary = fastest(rounds, size, () -> loaded(store, () -> store.loadMapped(binary)));
+        System.out.printf("  loadFromJson        %6d ms%n", fromJson);
+        System.out.printf("  loadBinary          %6d ms (%.2fx loadFromJson)%n", fromBinary, (double) fromBinary / fromJson);
+        System.out.printf("  loadMapped, JSON    %6d ms (%.2fx loadFromJson)%n", mappedJson, (double) mappedJson / fromJson);
+        System.out.printf("  loadMapped, binary  %6d ms (%.2fx loadFromJson)%n", mappedBinary, (double) mappedBinary / fromJson);
+
+        fixture.close();
+        System.exit(binaryBytes < jsonBytes && parseBinary < parseJson && fromBinary < fromJson ? 0 : 1);
+    }
+
+    /** A read of the tasks, returning how many came back. */
+    private interface Load {
+        int run() throws IOException;
+    }
+
+    /** Runs a load the given number of times and returns the fastest, checking that every task came back. */
+    private static long fastest(int rounds, int size, Load load) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            System.gc();
+            long start = System.nanoTime();
+            int n = load.run();
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+            if (n != size) throw new IllegalStateException("loaded " + n + " of " + size + " tasks");
+        }
+        return best;
+    }
+
+    private static int loaded(TaskStore store, BooleanSupplier load) {
+        if (!load.getAsBoolean()) throw new IllegalStateException("load failed");
+        return store.all().size();
+    }
+
+    private static int parseJson(Path json) throws IOException {
+        List<Task> out = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(json, StandardOpenOption.READ)) {
+            new TaskJsonReader(ch).readTasks(out::add);
+        }
+        return out.size();
+    }
+
+    private static int parseBinary(Path binary) throws IOException {
+        List<Task> out = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(binary)) {
+            TaskBinaryCodec.Reader r = new TaskBinaryCodec.Reader(in);
+            for (Task t = r.next(); t != null; t = r.next()) out.add(t);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,54 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Insert benchmark for TaskStore: adds a million tasks one at a time
+ * through {@link TaskStore#addTask(Task)} and times every block of them.
+ *
+ * Each add checks the new title against every title already in the store.
+ * With the title index that check costs the same at a million tasks as at
+ * the first one, so every block should take about as long as the one
+ * before it. A scan of the titles would make the last block ten times
+ * slower than the first.
+ *
+ * Run with {@code java model.TaskStoreInsertBench [tasks] [block]}; the exit
+ * status is 1 if the last block took more than three times as long as the
+ * first measured one.
+ */
+public final class TaskStoreInsertBench {
+
+    /** How much slower than the first measured block the last one may be. */
+    private static final double MAX_GROWTH = 3.0;
+
+    private TaskStoreInsertBench() {}
+
+    public static void main(String[] args) throws Exception {
+        int total = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+        int block = (args.length > 1) ? Integer.parseInt(args[1]) : 100_000;
+
+        StoreFixture fixture = StoreFixture.opened("taskstore-insert");
+        TaskStore store = fixture.store();
+
+        System.out.println("Adding " + total + " tasks in blocks of " + block);
+        double first = 0, last = 0;
+        for (int from = 0; from < total; from += block) {
+            int to = Math.min(total, from + block);
+            List<Task> tasks = StoreFixture.tasks(from, to);
+
+            long start = System.nanoTime();
+            for (Task t : tasks) store.addTask(t);
+            double micros = (System.nanoTime() - start) / 1e3 / (to - from);
+
+            System.out.printf("  %,9d .. %,9d  %6.2f us/task%n", from, to, micros);
+            // the first block also warms up the JIT, so growth is measured from the second
+            if (from == block || first == 0) first = micros;
+            last = micros;
+        }
+
+        double growth = last / first;
+        System.out.printf("Last block took %.2fx as long as the first measured one%n", growth);
+        fixture.close();
+        System.exit(growth <= MAX_GROWTH ? 0 : 1);
+    }
+}
@@ -0,0 +1,112 @@
+package model;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Allocation benchmark for saving: compares what one save allocates on the
+ * saving thread when the document is built as a String first, as
+ * saveToJson used to do it, and when the tasks are streamed to the file by
+ * {@link TaskStore#saveToJson(Path)}, at 100k and at 1M tasks.
+ *
+ * The old path holds the whole document in a StringBuilder, copies it into
+ * a String and encodes that again to write it, so it allocates several
+ * times the file size. The streaming path allocates buffers of a fixed
+ * size and very little per task.
+ *
+ * Run with {@code java model.TaskStoreSaveBench [sizes...]}; the exit status
+ * is 1 if the streaming save allocates as much as the file it writes.
+ */
+public final class TaskStoreSaveBench {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private TaskStoreSaveBench() {}
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = (args.length > 0) ? new int[args.length] : new int[] { 100_000, 1_000_000 };
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        StoreFixture fixture = StoreFixture.opened("taskstore-save");
+        TaskStore store = fixture.store();
+        Path out = fixture.file("saved.json");
+
+        boolean ok = true;
+        int n = 0;
+        for (int size : sizes) {
+            List<Task> more = new ArrayList<>();
+            // quoted titles, so the escaping is part of the measurement
+            for (; n < size; n++) more.add(StoreFixture.task(n, "Task \"" + n + "\""));
+            store.addAll(more);
+            List<Task> all = store.all();
+
+            // one of each first, so the JIT and the file system are warmed up
+            oldSave(all, out);
+            store.saveToJson(out);
+
+            long oldBytes = allocated(() -> oldSave(all, out));
+            long oldMillis = millis(() -> oldSave(all, out));
+            long newBytes = allocated(() -> store.saveToJson(out));
+            long newMillis = millis(() -> store.saveToJson(out));
+            long fileBytes = Files.size(out);
+
+            System.out.printf("%,d tasks, %,d byte file%n", size, fileBytes);
+            System.out.printf("  String then write: %,15d bytes allocated (%.1fx the file), %5d ms%n",
+                    oldBytes, (double) oldBytes / fileBytes, oldMillis);
+            System.out.printf("  streamed:          %,15d bytes allocated (%.1fx the file), %5d ms%n",
+                    newBytes, (double) newBytes / fileBytes, newMillis);
+            if (newBytes >= fileBytes) ok = false;
+        }
+
+        fixture.close();
+        System.exit(ok ? 0 : 1);
+    }
+
+    /** The save as it was before streaming: the whole document as one String, then written. */
+    private static void oldSave(List<Task> tasks, Path path) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[");
+        boolean first = true;
+        for (Task t : tasks) {
+            if (!first) sb.append(",");
+            first = false;
+            sb.append("{");
+            sb.append("\"id\":\"").append(esc(t.id().value())).append("\",");
+            sb.append("\"title\":\"").append(esc(t.title())).append("\",");
+            sb.append("\"dueDate\":").append(t.Date() == null ? "null" : ("\"" + t.Date() + "\"")).append(",");
+            sb.append("\"completed\":").append(t.completed());
+            sb.append("}");
+        }
+        sb.append("]");
+        try {
+            Files.writeString(path, sb.toString(),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String esc(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /** Bytes the current thread allocates while running the save. */
+    private static long allocated(Runnable save) {
+        long id = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(id);
+        save.run();
+        return THREADS.getThreadAllocatedBytes(id) - before;
+    }
+
+    private static long millis(Runnable save) {
+        long start = System.nanoTime();
+        save.run();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,441 @@
+package model;
+
+import observer.TaskEvent;
+import observer.TaskObserver;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Stress harness for TaskStore: hammers the store from many threads and
+ * checks that it stays consistent, both while it runs and once it settles.
+ *
+ * Writers add, toggle, edit and remove tasks, one at a time and in
+ * batches. Titles come from a small pool, so title claims collide.
+ * Readers search, run queries and walk snapshots. A refiner keeps
+ * switching a live query between wider and narrower searches. A saver exports the
+ * store, and the log grows enough to be compacted many times over. A
+ * checker stops the store every half second with an empty batch and,
+ * while it holds the store, compares what the trigram, date and status
+ * indexes answer, the counts, the titles, the live queries and what the
+ * snapshot file plus the log replay to with the snapshot's tasks.
+ *
+ * Once the threads stop, three more checks run. A mirror fed only by the
+ * observer events must match the store. Every query answered through the
+ * indexes must match a plain scan. The tasks saved on close must load
+ * back unchanged.
+ *
+ * Run with {@code java model.TaskStoreStress [writers] [seconds]}; the
+ * exit status is 1 if anything disagreed.
+ */
+public final class TaskStoreStress {
+
+    private static final int TITLES = 20_000;
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final StoreFixture fixture;
+    private final TaskStore store;
+    private final List<LiveQuery> live = new ArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final List<String> problems = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong mutations = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong checks = new AtomicLong();
+    /** Log checks skipped because a compaction kept changing the files. */
+    private final AtomicLong logSkips = new AtomicLong();
+    /** What the events say the store holds; only touched by the dispatcher thread until it is idle. */
+    private final Map<TaskId, Task> mirror = new HashMap<>();
+
+    private TaskStoreStress(StoreFixture fixture) {
+        this.fixture = fixture;
+        this.store = fixture.store();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int writers = (args.length > 0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long seconds = (args.length > 1) ? Long.parseLong(args[1]) : 20;
+        StoreFixture fixture = StoreFixture.opened("taskstore-stress");
+        List<String> problems = new TaskStoreStress(fixture).run(writers, seconds);
+        fixture.close();
+        if (problems.isEmpty()) {
+            System.out.println("No problems found.");
+            System.exit(0);
+        }
+        System.out.println(problems.size() + " problem(s):");
+        for (String p : problems.subList(0, Math.min(problems.size(), 50))) System.out.println("  " + p);
+        System.exit(1);
+    }
+
+    private List<String> run(int writers, long seconds) throws Exception {
+        Path file = fixture.snapshotFile();
+        store.addObserver(new TaskObserver() {
+            @Override public void onTaskEvents(List<TaskEvent> events) { follow(events); }
+        });
+        // the observer came after the load, so the mirror starts from what is there
+        mirror.clear();
+        for (Task t : store.all()) mirror.put(t.id(), t);
+        live.add(store.liveQuery(Query.titleContains("task 1")));
+        live.add(store.liveQuery(Query.pending().orderBy(Query.Order.TITLE).limit(100)));
+        live.add(store.liveQuery(Query.dueBefore(TODAY)));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            long seed = i;
+            threads.add(new Thread(() -> write(new Random(seed)), "stress-writer-" + i));
+        }
+        for (int i = 0; i < 2; i++) {
+            long seed = 100 + i;
+            threads.add(new Thread(() -> read(new Random(seed)), "stress-reader-" + i));
+        }
+        LiveQuery refined = store.liveQuery(Query.titleContains("task"));
+        live.add(refined);
+        threads.add(new Thread(() -> refine(refined, new Random(200)), "stress-refiner"));
+        threads.add(new Thread(() -> save(fixture.file("export.json")), "stress-saver"));
+        threads.add(new Thread(this::check, "stress-checker"));
+
+        System.out.println("Running " + writers + " writers for " + seconds + " s in " + fixture.dir());
+        for (Thread t : threads) t.start();
+        Thread.sleep(seconds * 1000);
+        running.set(false);
+        for (Thread t : threads) t.join();
+
+        if (!store.awaitObservers(10_000)) problems.add("events were still undelivered after 10 s");
+        problems.addAll(verify());
+        checkMirror();
+        checkQueries();
+        checkReload(file);
+        System.out.println(mutations.get() + " mutations (" + refused.get() + " refused), "
+                + reads.get() + " reads, " + checks.get() + " consistency checks (" + logSkips.get() + " without the log), "
+                + store.getSavesWritten() + " snapshots written, " + store.all().size() + " tasks left");
+        return problems;
+    }
+
+    /** Mutates random tasks until told to stop; a refused title is part of the test, not a failure. */
+    private void write(Random rnd) {
+        while (running.get()) {
+            try {
+                int op = rnd.nextInt(100);
+                if (op < 30) store.addTask(newTask(rnd));
+                else if (op < 50) ifAny(rnd, t -> store.toggleCompleted(t.id()));
+                else if (op < 70) ifAny(rnd, t -> store.updateTask(new Task(t.id(), title(rnd), date(rnd), t.completed())));
+                else if (op < 85) ifAny(rnd, t -> store.removeTask(t.id()));
+                else if (op < 92) {
+                    List<Task> add = new ArrayList<>();
+                    for (int i = 0; i < 10; i++) add.add(newTask(rnd));
+                    store.addAll(add);
+                } else {
+                    List<TaskId> ids = new ArrayList<>();
+                    for (int i = 0; i < 5; i++) ifAny(rnd, t -> ids.add(t.id()));
+                    store.removeAll(ids);
+                }
+                mutations.incrementAndGet();
+            } catch (IllegalArgumentException taken) {
+                refused.incrementAndGet();
+            } catch (RuntimeException e) {
+                problems.add(Thread.currentThread().getName() + " failed: " + e);
+            }
+        }
+    }
+
+    /** Runs searches and queries and walks snapshots, checking what can be checked without a lock. */
+    private void read(Random rnd) {
+        long lastVersion = -1;
+        while (running.get()) {
+            try {
+                TaskSnapshot s = store.snapshot();
+                if (s.version() < lastVersion) problems.add("snapshot version went back from " + lastVersion + " to " + s.version());
+                lastVersion = s.version();
+                int n = 0;
+                for (Task t : s.tasks()) if (t != null) n++;
+                if (n != s.size()) problems.add("snapshot of size " + s.size() + " iterated " + n + " tasks");
+                if (n > 0 && s.get(rnd.nextInt(n)) == null) problems.add("snapshot returned a null task");
+
+                store.search("task " + rnd.nextInt(100));
+                store.find(Query.and(Query.pending(), Query.dueBetween(TODAY, TODAY.plusDays(7))));
+                store.completeTitle("task " + rnd.nextInt(10), 8);
+                reads.incrementAndGet();
+            } catch (RuntimeException e) {
+                problems.add(Thread.currentThread().getName() + " failed: " + e);
+            }
+        }
+    }
+
+    /** Switches a live query around; verify() compares it with the store like the others. */
+    private void refine(LiveQuery live, Random rnd) {
+        String[] texts = { "task", "task 1", "task 12", "task 123", "task 2" };
+        while (running.get()) {
+            try {
+                Query q = Query.titleContains(texts[rnd.nextInt(texts.length)]);
+                live.refine(rnd.nextBoolean() ? q : Query.and(q, Query.pending()));
+                reads.incrementAndGet();
+            } catch (RuntimeException e) {
+                problems.add(Thread.currentThread().getName() + " failed: " + e);
+            }
+        }
+    }
+
+    private void save(Path export) {
+        while (running.get()) {
+            if (!store.saveToJson(export)) problems.add("export failed");
+            pause(200);
+        }
+    }
+
+    private void check() {
+        while (running.get()) {
+            problems.addAll(verify());
+            checks.incrementAndGet();
+            pause(500);
+        }
+    }
+
+    private void follow(List<TaskEvent> events) {
+        for (TaskEvent e : events) {
+            switch (e.type()) {
+                case ADDED:
+                case UPDATED:
+                    mirror.put(e.id(), e.after());
+                    break;
+                case REMOVED:
+                    mirror.remove(e.id());
+                    break;
+                case BULK_LOADED:
+                    mirror.clear();
+                    for (Task t : store.all()) mirror.put(t.id(), t);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Checks that the indexes, the live queries and what a restart would
+     * load from disk all agree with the snapshot. It runs inside an empty
+     * batch, which holds the store exclusively: no mutation can start, and
+     * the reads made there answer from the indexes as they are, so it
+     * sees one consistent moment even while other threads keep mutating.
+     *
+     * @return a description of every disagreement found; empty if there is none
+     */
+    private List<String> verify() {
+        List<String> found = new ArrayList<>();
+        store.batch(m -> {
+            verifyIndexes(found);
+            verifyLog(found);
+        });
+        return found;
+    }
+
+    private void verifyIndexes(List<String> found) {
+        TaskSnapshot s = store.snapshot();
+        Map<String, Task> titles = new HashMap<>();
+        Map<LocalDate, List<Task>> byDate = new LinkedHashMap<>();
+        List<Task> done = new ArrayList<>(), open = new ArrayList<>();
+        for (Task t : s.tasks()) {
+            Task same = titles.put(t.title().trim().toLowerCase(Locale.ROOT), t);
+            if (same != null) found.add("two tasks have the title of " + t + ": " + same);
+            (t.completed() ? done : open).add(t);
+            if (t.Date() != null) byDate.computeIfAbsent(t.Date(), d -> new ArrayList<>()).add(t);
+            if (t.title().length() >= 3 && !containsSame(store.search(t.title()), t)) found.add("trigram index misses " + t);
+        }
+        for (Map.Entry<LocalDate, List<Task>> e : byDate.entrySet()) {
+            if (!e.getValue().equals(store.find(Query.dueOn(e.getKey())))) found.add("date index disagrees on " + e.getKey());
+        }
+        if (!done.equals(store.find(Query.completed())) || !open.equals(store.find(Query.pending())))
+            found.add("status index disagrees with the tasks");
+        if (store.completedCount() != done.size() || store.pendingCount() != open.size())
+            found.add("counts " + store.completedCount() + "/" + store.pendingCount()
+                    + " but tasks " + done.size() + "/" + open.size());
+        for (LiveQuery q : live) {
+            if (!q.results().equals(store.find(q.query()))) found.add("live query out of date: " + q.query());
+        }
+    }
+
+    private static boolean containsSame(List<Task> list, Task t) {
+        for (Task o : list) if (o == t) return true;
+        return false;
+    }
+
+    /**
+     * Compares the snapshot with what the snapshot file plus the log replay
+     * to. A compaction may still be writing its snapshot or dropping the
+     * rotated segment, which the batch does not hold off, so the files are
+     * read again if they changed meanwhile, and the check is skipped if
+     * they keep changing.
+     */
+    private void verifyLog(List<String> found) {
+        Path file = fixture.snapshotFile();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                List<Object> before = fileState(file);
+                List<Task> replayed = replay(file);
+                if (!before.equals(fileState(file))) continue;
+                compare(replayed, found);
+                return;
+            } catch (IOException e) {
+                found.add("saved tasks unreadable: " + e.getMessage());
+                return;
+            }
+        }
+        logSkips.incrementAndGet();
+    }
+
+    /** Loads the snapshot file and replays the log on it, placing tasks the way open() does. */
+    private static List<Task> replay(Path file) throws IOException {
+        // loaded tasks first, then new ones by their logged ordinal
+        TreeMap<Integer, Task> replayed = new TreeMap<>();
+        Map<TaskId, Integer> placed = new HashMap<>();
+        int[] next = new int[1];
+        ObjIntConsumer<Task> put = (t, ordinal) -> {
+            Integer at = placed.get(t.id());
+            if (at == null) {
+                at = (ordinal < 0 || replayed.containsKey(ordinal)) ? next[0] : ordinal;
+                next[0] = Math.max(next[0], at + 1);
+                placed.put(t.id(), at);
+            }
+            replayed.put(at, t);
+        };
+        if (Files.exists(file)) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                new TaskJsonReader(ch).readTasks(t -> put.accept(t, -1));
+            }
+        }
+        int base = next[0];
+        TaskLog.read(TaskLog.pathFor(file), (t, logged) -> put.accept(t, base + logged), id -> {
+            Integer at = placed.remove(id);
+            if (at != null) replayed.remove(at);
+        });
+        return new ArrayList<>(replayed.values());
+    }
+
+    private void compare(List<Task> replayed, List<String> found) {
+        Iterator<Task> saved = replayed.iterator();
+        for (Task t : store.snapshot().tasks()) {
+            Task r = saved.hasNext() ? saved.next() : null;
+            if (r == null || !same(r, t)) {
+                found.add("replay gives " + r + " where the store has " + t);
+                return;
+            }
+        }
+        if (saved.hasNext()) found.add("replay has extra tasks, first " + saved.next());
+    }
+
+    /** Which snapshot and log files exist, and their identity, size and age; a compaction changes it. */
+    private static List<Object> fileState(Path file) throws IOException {
+        List<Object> state = new ArrayList<>();
+        Path[] segments = TaskLog.segmentsFor(file);
+        for (Path p : new Path[] { file, segments[0], segments[1] }) {
+            if (!Files.exists(p)) {
+                state.add(null);
+                continue;
+            }
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+            state.add(a.fileKey());
+            state.add(a.size());
+            state.add(a.lastModifiedTime());
+        }
+        return state;
+    }
+
+    private static boolean same(Task a, Task b) {
+        return a.id().equals(b.id()) && a.title().equals(b.title())
+                && Objects.equals(a.Date(), b.Date()) && a.completed() == b.completed();
+    }
+
+    /** The events, folded and delivered in batches, must add up to the store's content. */
+    private void checkMirror() {
+        List<Task> all = store.all();
+        if (mirror.size() != all.size()) problems.add("events describe " + mirror.size() + " tasks, the store has " + all.size());
+        for (Task t : all) {
+            if (mirror.get(t.id()) != t) {
+                problems.add("events end with " + mirror.get(t.id()) + " where the store has " + t);
+                return;
+            }
+        }
+    }
+
+    /** Queries answered through the indexes must agree with a scan of every task. */
+    private void checkQueries() {
+        List<Query> queries = List.of(
+                Query.all(),
+                Query.titleContains("task 12"),
+                Query.titleContains("sk"),
+                Query.completed(),
+                Query.pending(),
+                Query.dueOn(TODAY),
+                Query.dueBefore(TODAY),
+                Query.dueBetween(TODAY.minusDays(3), TODAY.plusDays(3)),
+                Query.and(Query.titleContains("task 3"), Query.not(Query.completed())),
+                Query.or(Query.dueOn(TODAY.plusDays(1)), Query.titleContains("99")));
+        for (Query q : queries) {
+            List<Task> scanned = new ArrayList<>();
+            for (Task t : store.all()) if (q.matches(t)) scanned.add(t);
+            if (!scanned.equals(store.find(q))) problems.add("find and a scan disagree on " + q);
+        }
+    }
+
+    /** What close() saves must load back as the same tasks in the same order. */
+    private void checkReload(Path file) throws IOException {
+        List<Task> before = new ArrayList<>(store.all());
+        store.close();
+        if (Files.exists(TaskLog.pathFor(file))) problems.add("close left the log behind");
+        if (!store.loadFromJson(file)) {
+            problems.add("the saved tasks did not load");
+            return;
+        }
+        List<Task> after = store.all();
+        if (after.size() != before.size()) problems.add("reloaded " + after.size() + " of " + before.size() + " tasks");
+        for (int i = 0; i < Math.min(before.size(), after.size()); i++) {
+            Task a = before.get(i), b = after.get(i);
+            if (!same(a, b)) {
+                problems.add("reloaded " + b + " where " + a + " was saved");
+                return;
+            }
+        }
+    }
+
+    private void ifAny(Random rnd, Consumer<Task> action) {
+        TaskSnapshot s = store.snapshot();
+        if (s.size() > 0) action.accept(s.get(rnd.nextInt(s.size())));
+    }
+
+    private static Task newTask(Random rnd) {
+        return new Task(new TaskId(), title(rnd), date(rnd), false);
+    }
+
+    private static String title(Random rnd) {
+        return "task " + rnd.nextInt(TITLES);
+    }
+
+    private static LocalDate date(Random rnd) {
+        return rnd.nextInt(4) == 0 ? null : TODAY.plusDays(rnd.nextInt(61) - 30);
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package view;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+import javax.swing.SwingUtilities;
+
+import controller.TaskController;
+import model.StoreFixture;
+import model.Task;
+import model.TaskStore;
+
+/**
+ * Paint benchmark for the task list's renderer: scrolls through a list of
+ * tasks the way painting does, asking the renderer for every visible row
+ * on every frame, and measures what the calls allocate on the event
+ * dispatch thread.
+ *
+ * The renderer is the one the view installs, taken from a real
+ * TaskListView, so it runs with the look and feel's fonts and colors. The
+ * rows mix tasks due today, completed tasks and others, so every branch
+ * of the renderer is taken on every frame.
+ *
+ * Run with {@code java -Djava.awt.headless=true view.TodayRendererBench [frames]};
+ * the exit status is 1 if the renderer allocates anything per cell. The
+ * renderer allocates nothing by itself, not only once the JIT has removed
+ * its garbage, so the result holds with {@code -XX:-DoEscapeAnalysis} or
+ * {@code -Xint} as well.
+ */
+public final class TodayRendererBench {
+
+    private static final int ROWS = 2_000;
+    private static final int VISIBLE = 40;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private TodayRendererBench() {}
+
+    public static void main(String[] args) throws Exception {
+        int frames = (args.length > 0) ? Integer.parseInt(args[0]) : 50_000;
+
+        StoreFixture fixture = StoreFixture.loaded("renderer-bench");
+        TaskStore store = fixture.store();
+
+        LocalDate today = LocalDate.now();
+        List<Task> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            LocalDate due = (i % 4 == 0) ? null : today.plusDays(i % 5 - 2);
+            rows.add(new Task(null, "Task " + i, due, i % 3 == 0));
+        }
+
+        long[] result = new long[2];
+        SwingUtilities.invokeAndWait(() -> {
+            TaskListView view = new TaskListView(new TaskController(store));
+            @SuppressWarnings("unchecked")
+            JList<Task> list = (JList<Task>) find(view, JList.class);
+            ListCellRenderer<? super Task> renderer = list.getCellRenderer();
+
+            scroll(list, renderer, rows, frames / 10); // warm-up, so the JIT has compiled the calls
+            long id = Thread.currentThread().getId();
+            long before = THREADS.getThreadAllocatedBytes(id);
+            long start = System.nanoTime();
+            result[0] = scroll(list, renderer, rows, frames);
+            long nanos = System.nanoTime() - start;
+            result[1] = THREADS.getThreadAllocatedBytes(id) - before;
+            System.out.printf("%,d frames of %d rows: %,d cells in %d ms (%.0f ns/cell)%n",
+                    frames, VISIBLE, result[0], nanos / 1_000_000, (double) nanos / result[0]);
+        });
+
+        double perCell = (double) result[1] / result[0];
+        System.out.printf("%,d bytes allocated, %.4f bytes/cell%n", result[1], perCell);
+        fixture.close();
+        // the allocation counter itself may account a few bytes, but not one per cell
+        System.exit(perCell < 1 ? 0 : 1);
+    }
+
+    /** Renders VISIBLE rows per frame, moving down one row a frame, with one row selected; returns the cell count. */
+    private static long scroll(JList<Task> list, ListCellRenderer<? super Task> renderer, List<Task> rows, int frames) {
+        long cells = 0;
+        for (int f = 0; f < frames; f++) {
+            int top = f % (rows.size() - VISIBLE);
+            for (int i = top; i < top + VISIBLE; i++) {
+                Component c = renderer.getListCellRendererComponent(list, rows.get(i), i, i == top + 3, false);
+                if (c == null) throw new IllegalStateException("no component for row " + i);
+                cells++;
+            }
+        }
+        return cells;
+    }
+
+    /** Finds the first component of the given type in a component tree. */
+    private static Component find(Container root, Class<?> type) {
+        for (Component c : root.getComponents()) {
+            if (type.isInstance(c)) return c;
+            if (c instanceof Container) {
+                Component found = find((Container) c, type);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+}
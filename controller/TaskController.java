@@ -5,6 +5,9 @@ import model.TaskId;
 import model.TaskStore;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Handles the interaction between the View and the Model.
@@ -65,4 +68,52 @@ public class TaskController {
     public void editTask(Task updated) { 
         store.updateTask(updated); 
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds many tasks at once, e.g. for an import. All titles are checked
+     * before anything is added, and the store saves and notifies only once.
+     *
+     * @param titles the titles of the new tasks (each required)
+     * @param Date the date given to every new task
+     * @throws IllegalArgumentException if a title is blank or already taken; then nothing is added
+     */
+    public void addAll(Collection<String> titles, LocalDate Date) {
+        List<Task> tasks = new ArrayList<>(titles.size());
+        for (String title : titles) {
+            if (title == null || title.isBlank())
+                throw new IllegalArgumentException("Title is required");
+            tasks.add(new Task(new TaskId(), title.trim(), Date, false));
+        }
+        store.addAll(tasks);
+    }
+
+    /**
+     * Deletes many tasks at once.
+     *
+     * @param ids the identifiers of the tasks to delete
+     */
+    public void deleteAll(Collection<TaskId> ids) {
+        store.removeAll(ids);
+    }
+
+    /**
+     * Toggles the completion status of many tasks at once.
+     *
+     * @param ids the identifiers of the tasks to toggle
+     */
+    public void toggleAll(Collection<TaskId> ids) {
+        store.batch(m -> {
+            for (TaskId id : ids) m.toggle(id);
+        });
+    }
+
+    /**
+     * Updates many tasks at once.
+     *
+     * @param updated the updated Task objects
+     * @throws IllegalArgumentException if a title is already taken; then nothing is changed
+     */
+    public void editAll(Collection<Task> updated) {
+        store.updateAll(updated);
+    }
+}
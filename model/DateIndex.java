@@ -0,0 +1,99 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Ordered index from due dates to the ordinals of the tasks due on them.
+ *
+ * A date range is answered by walking just the buckets inside it, so a
+ * query costs O(log n + k) for k matching tasks. Tasks without a due date
+ * are not indexed.
+ *
+ * Mutations touch a single bucket and are short, so the whole index is
+ * guarded by its own monitor; empty buckets are dropped right away.
+ */
+final class DateIndex {
+
+    private final NavigableMap<LocalDate, OrdinalSet> buckets = new TreeMap<>();
+
+    /**
+     * Indexes a task's due date.
+     *
+     * @param ordinal the task's ordinal
+     * @param due the due date, or null for none
+     */
+    synchronized void add(int ordinal, LocalDate due) {
+        if (due == null) return;
+        buckets.computeIfAbsent(due, d -> new OrdinalSet()).add(ordinal);
+    }
+
+    /**
+     * Removes a due date that was indexed under the given ordinal.
+     *
+     * @param ordinal the task's ordinal
+     * @param due the date it was indexed with, or null for none
+     */
+    synchronized void remove(int ordinal, LocalDate due) {
+        if (due == null) return;
+        OrdinalSet s = buckets.get(due);
+        if (s == null) return;
+        s.remove(ordinal);
+        if (s.isEmpty()) buckets.remove(due);
+    }
+
+    /** Drops every bucket; used when the whole store is replaced. */
+    synchronized void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * Returns the ordinals of the tasks due within a range.
+     *
+     * @param from the first date, inclusive, or null for no lower bound
+     * @param to the last date, inclusive, or null for no upper bound
+     * @return the matching ordinals, ascending
+     */
+    synchronized int[] range(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) return new int[0];
+        NavigableMap<LocalDate, OrdinalSet> sub = buckets;
+        if (from != null) sub = sub.tailMap(from, true);
+        if (to != null) sub = sub.headMap(to, true);
+        int[] out = concat(sub.values());
+        Arrays.sort(out);
+        return out;
+    }
+
+    /**
+     * Counts the tasks due within a range without copying their ordinals.
+     *
+     * @param from the first date, inclusive, or null for no lower bound
+     * @param to the last date, inclusive, or null for no upper bound
+     * @return the number of matching tasks
+     */
+    synchronized int count(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) return 0;
+        NavigableMap<LocalDate, OrdinalSet> sub = buckets;
+        if (from != null) sub = sub.tailMap(from, true);
+        if (to != null) sub = sub.headMap(to, true);
+        int n = 0;
+        for (OrdinalSet s : sub.values()) n += s.size();
+        return n;
+    }
+
+    private static int[] concat(Collection<OrdinalSet> sets) {
+        int n = 0;
+        for (OrdinalSet s : sets) n += s.size();
+        int[] out = new int[n];
+        int at = 0;
+        for (OrdinalSet s : sets) {
+            int[] part = s.copy();
+            System.arraycopy(part, 0, out, at, part.length);
+            at += part.length;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,296 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import observer.TaskEvent;
+import observer.TaskObserver;
+
+/**
+ * Delivers task events to observers on a thread of its own, in batches.
+ *
+ * Mutators only put their event on a bounded queue and return. The
+ * dispatcher thread takes the first event, waits out a short window for
+ * more, folds the events of each task into one and hands the batch to
+ * every observer in a single call. A burst of mutations thus costs each
+ * observer one callback per window instead of one per mutation.
+ *
+ * Events are delivered in the order the changes took effect, not the order
+ * they reached the queue. A mutator takes a position with {@link #sequence()}
+ * while its change is still locked in, and publishes under that position
+ * once its locks are released; the dispatcher holds back anything that
+ * arrives ahead of a position still missing. Two changes to the same task
+ * therefore always reach the observers, and get folded, in the order they
+ * were made.
+ *
+ * When observers fall behind and the queue fills up, publishing blocks
+ * until the dispatcher catches up, so a slow observer slows writers down
+ * instead of letting events pile up without bound. Events published by an
+ * observer from inside a delivery never block; they join the next batch.
+ */
+final class EventDispatcher {
+
+    /** Publications (single events or batches) that may wait before publishers are held up. */
+    private static final int QUEUE_CAPACITY = 8192;
+
+    /** Position for changes made while nobody observes; published events under it are dropped. */
+    static final long NONE = -1;
+
+    private final List<TaskObserver> observers;
+    private final BlockingQueue<Publication> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile long windowMillis;
+    private volatile Thread thread;
+
+    /** Next position handed out by sequence(). */
+    private final AtomicLong positions = new AtomicLong();
+    /** Publications that arrived ahead of a missing position; only touched by the dispatcher thread. */
+    private final PriorityQueue<Publication> early = new PriorityQueue<>((a, b) -> Long.compare(a.seq, b.seq));
+    /** Position of the next publication to deliver; only touched by the dispatcher thread. */
+    private long expected;
+
+    /** Publications made from inside a delivery; only touched by the dispatcher thread. */
+    private final List<Publication> reentrant = new ArrayList<>();
+
+    /** Published but not yet delivered events; guarded by itself. */
+    private final Object idle = new Object();
+    private long undelivered;
+
+    /**
+     * @param observers the live list of observers to deliver to
+     * @param windowMillis how long to collect events into one batch
+     */
+    EventDispatcher(List<TaskObserver> observers, long windowMillis) {
+        this.observers = observers;
+        this.windowMillis = windowMillis;
+    }
+
+    void setWindow(long millis) {
+        windowMillis = Math.max(0, millis);
+    }
+
+    long getWindow() {
+        return windowMillis;
+    }
+
+    /** Events published under one position. */
+    private static final class Publication {
+        final long seq;
+        final List<TaskEvent> events;
+
+        Publication(long seq, List<TaskEvent> events) {
+            this.seq = seq;
+            this.events = events;
+        }
+    }
+
+    /**
+     * Reserves the delivery position of a change. Must be called while the
+     * change is still exclusive to the caller (inside the task's compute,
+     * or with the store held exclusively), and every position taken must be
+     * published, even with no events, or later events are held back.
+     *
+     * @return the position, or {@link #NONE} if nobody observes the store
+     */
+    long sequence() {
+        return observers.isEmpty() ? NONE : positions.getAndIncrement();
+    }
+
+    /**
+     * Queues an event for delivery, waiting for room if the queue is full.
+     *
+     * @param seq the change's position from {@link #sequence()}
+     * @param e the event
+     */
+    void publish(long seq, TaskEvent e) {
+        publishAll(seq, List.of(e));
+    }
+
+    /**
+     * Queues the events of one bulk change; they are delivered together,
+     * in the same batch. Waiting for room in the queue is not cut short by
+     * an interrupt, since a position that never arrives would hold back
+     * every event after it; the interrupt is kept for the caller.
+     *
+     * @param seq the change's position from {@link #sequence()}
+     * @param events the events, in the order they happened
+     */
+    void publishAll(long seq, List<TaskEvent> events) {
+        if (seq == NONE) return;
+        Thread t = start();
+        synchronized (idle) {
+            undelivered += events.size();
+        }
+        Publication p = new Publication(seq, events);
+        if (Thread.currentThread() == t) {
+            reentrant.add(p);
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(p);
+                break;
+            } catch (InterruptedException ie) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Waits until every event published so far has been delivered.
+     *
+     * @param timeoutMillis how long to wait at most
+     * @return true if everything was delivered in time
+     */
+    boolean await(long timeoutMillis) {
+        if (Thread.currentThread() == thread) {
+            synchronized (idle) {
+                return undelivered == 0;
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (idle) {
+            try {
+                while (undelivered > 0) {
+                    long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (left <= 0) return false;
+                    idle.wait(left);
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private Thread start() {
+        Thread t = thread;
+        if (t != null) return t;
+        synchronized (this) {
+            if (thread == null) {
+                t = new Thread(this::run, "TaskStore-events");
+                t.setDaemon(true);
+                thread = t;
+                t.start();
+            }
+            return thread;
+        }
+    }
+
+    private void run() {
+        List<TaskEvent> batch = new ArrayList<>();
+        List<Publication> drained = new ArrayList<>();
+        while (true) {
+            try {
+                while (batch.isEmpty()) {
+                    if (reentrant.isEmpty()) {
+                        order(queue.take(), batch);
+                    } else {
+                        for (Publication p : reentrant) order(p, batch);
+                        reentrant.clear();
+                    }
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+                drain(batch, drained);
+                long left;
+                while ((left = deadline - System.nanoTime()) > 0) {
+                    Publication p = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (p == null) break;
+                    order(p, batch);
+                    drain(batch, drained);
+                }
+            } catch (InterruptedException ie) {
+                return;
+            }
+            deliver(coalesce(batch));
+            delivered(batch.size());
+            batch.clear();
+        }
+    }
+
+    private void drain(List<TaskEvent> batch, List<Publication> drained) {
+        queue.drainTo(drained);
+        for (Publication p : drained) order(p, batch);
+        drained.clear();
+    }
+
+    /** Moves a publication, and any held back behind it, into the batch once its turn has come. */
+    private void order(Publication p, List<TaskEvent> batch) {
+        early.add(p);
+        while (!early.isEmpty() && early.peek().seq == expected) {
+            batch.addAll(early.poll().events);
+            expected++;
+        }
+    }
+
+    /**
+     * Hands a batch to every observer. Whatever one observer throws, errors
+     * included, is reported and does not keep the batch from the others or
+     * end the dispatcher thread, which would hold back every later event.
+     */
+    private void deliver(List<TaskEvent> events) {
+        if (events.isEmpty()) return;
+        for (TaskObserver o : observers) {
+            try {
+                o.onTaskEvents(events);
+            } catch (Throwable ex) {
+                System.err.println("Observer failed: " + ex);
+            }
+        }
+    }
+
+    private void delivered(int n) {
+        synchronized (idle) {
+            undelivered -= n;
+            if (undelivered == 0) idle.notifyAll();
+        }
+    }
+
+    /**
+     * Folds the events of a batch so each task usually appears once, at the
+     * position of its first event: an add followed by updates is one add,
+     * several updates are one update from the first before to the last after,
+     * and a task added and removed within the batch disappears. A bulk load
+     * supersedes everything before it.
+     */
+    static List<TaskEvent> coalesce(List<TaskEvent> batch) {
+        List<TaskEvent> out = new ArrayList<>(batch.size());
+        Map<TaskId, Integer> open = new LinkedHashMap<>();
+        for (TaskEvent e : batch) {
+            if (e.type() == TaskEvent.Type.BULK_LOADED) {
+                out.clear();
+                open.clear();
+                out.add(e);
+                continue;
+            }
+            Integer at = open.get(e.id());
+            if (at == null || e.type() == TaskEvent.Type.ADDED) {
+                // first sight of this task, or re-added after a removal: keep it separate
+                if (e.type() != TaskEvent.Type.REMOVED) open.put(e.id(), out.size());
+                else open.remove(e.id());
+                out.add(e);
+                continue;
+            }
+            TaskEvent prev = out.get(at);
+            boolean wasAdded = prev.type() == TaskEvent.Type.ADDED;
+            if (e.type() == TaskEvent.Type.UPDATED) {
+                out.set(at, wasAdded ? TaskEvent.added(e.after()) : TaskEvent.updated(prev.before(), e.after()));
+            } else {
+                out.set(at, wasAdded ? null : TaskEvent.removed(prev.before()));
+                open.remove(e.id());
+            }
+        }
+        out.removeIf(Objects::isNull);
+        return out;
+    }
+}
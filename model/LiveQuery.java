@@ -0,0 +1,174 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The result of a {@link Query} kept up to date by the store as tasks change.
+ *
+ * A live query is registered with {@link TaskStore#liveQuery(Query)}. Each
+ * mutation then checks just the task it touched against the query and adds,
+ * replaces or drops that one entry, so reading the result after a change
+ * costs nothing more than copying it. {@link #refine(Query)} switches to a
+ * new query; when the new one is known to be narrower (typing one more
+ * character into a search, say) the current matches are filtered instead
+ * of searching the store again. {@link #page(int, int)} reads just a
+ * window of the result, for views that only show a few rows at a time.
+ *
+ * The matches are kept in the same ordinal trie as the store's snapshots,
+ * changed in place by the mutations. In insertion order a read just takes
+ * a snapshot of it, which costs nothing, and a page walks from its first
+ * row; only the title and due date orders have to sort the matches, once
+ * after each change.
+ *
+ * Date conditions are fixed when the query is built, so a query for
+ * "today" has to be refined with a new one after midnight.
+ *
+ * All methods are thread-safe. {@link #close()} stops the updates.
+ */
+public final class LiveQuery implements AutoCloseable {
+
+    private final TaskStore store;
+    /** Held by refine() from start to end, so two refinements cannot overtake each other. */
+    private final Object refining = new Object();
+    private Query query;
+    /** Every match regardless of the limit, by ordinal (insertion order). */
+    private TaskSnapshot.Editor matches = TaskSnapshot.EMPTY.edit();
+    /** The matches as of the last read; null once a change makes it stale. */
+    private TaskSnapshot current;
+    /** Sorted and limited copy of the matches for the title and due date orders; null once stale. */
+    private Task[] sorted;
+
+    LiveQuery(TaskStore store, Query query) {
+        this.store = store;
+        this.query = query;
+    }
+
+    /**
+     * Returns the query whose result is being maintained.
+     *
+     * @return the current query
+     */
+    public synchronized Query query() {
+        return query;
+    }
+
+    /**
+     * Returns the current result, in the query's order and up to its limit.
+     * The ordered result is cached until the next change that affects it.
+     *
+     * @return an unmodifiable list of the matching tasks
+     */
+    public synchronized List<Task> results() {
+        if (query.order == Query.Order.INSERTION) {
+            List<Task> all = current().tasks();
+            return all.size() > query.limit ? all.subList(0, query.limit) : all;
+        }
+        return Collections.unmodifiableList(Arrays.asList(sorted()));
+    }
+
+    /**
+     * Returns part of the current result, in the query's order. Only the
+     * requested rows are copied, however large the result is; in insertion
+     * order they are found by walking the matches from the first one, so
+     * paging does not depend on how many tasks match either.
+     *
+     * @param offset the position of the first row to return
+     * @param max the most rows to return
+     * @return an unmodifiable list of at most max tasks; empty past the end
+     */
+    public synchronized List<Task> page(int offset, int max) {
+        if (offset < 0 || max < 0) throw new IllegalArgumentException("offset and max must not be negative");
+        int end = (int) Math.min(count(), (long) offset + max);
+        if (offset >= end) return List.of();
+        if (query.order == Query.Order.INSERTION) return current().range(offset, end - offset);
+        return List.of(Arrays.copyOfRange(sorted(), offset, end));
+    }
+
+    /**
+     * Returns how many tasks {@link #results()} holds, without copying them.
+     *
+     * @return the number of matches, capped at the query's limit
+     */
+    public synchronized int count() {
+        return Math.min(matches.size(), query.limit);
+    }
+
+    /** The matches as they are now; taken in constant time and kept until the next change. */
+    private TaskSnapshot current() {
+        if (current == null) current = matches.done();
+        return current;
+    }
+
+    private Task[] sorted() {
+        if (sorted == null) {
+            Task[] all = current().tasks().toArray(new Task[0]);
+            if (query.order == Query.Order.TITLE)
+                Arrays.sort(all, Comparator.comparing(Task::title, String.CASE_INSENSITIVE_ORDER));
+            else if (query.order == Query.Order.DUE_DATE)
+                Arrays.sort(all, Comparator.comparing(Task::Date, Comparator.nullsLast(Comparator.naturalOrder())));
+            sorted = all.length > query.limit ? Arrays.copyOf(all, query.limit) : all;
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns how many tasks match, ignoring the limit.
+     *
+     * @return the number of matches
+     */
+    public synchronized int size() {
+        return matches.size();
+    }
+
+    /**
+     * Switches to another query. If the new query is known to be narrower
+     * than the current one, the current matches are filtered; otherwise the
+     * store is searched again. Either way the new result is built while
+     * the store goes on changing, and the old one stays readable and up to
+     * date until it is swapped in.
+     *
+     * @param next the new query
+     */
+    public void refine(Query next) {
+        if (next == null) throw new IllegalArgumentException("query required");
+        synchronized (refining) {
+            store.retarget(this, next);
+        }
+    }
+
+    /** Stops maintaining this query; its last result stays readable. */
+    @Override
+    public void close() {
+        store.unregister(this);
+    }
+
+    /** Applies one task's change; after is null if the task was removed. */
+    synchronized void apply(int ordinal, Task after) {
+        Task next = (after != null && query.matches(after)) ? after : null;
+        if (matches.get(ordinal) == next) return;
+        matches.set(ordinal, next);
+        current = null;
+        sorted = null;
+    }
+
+    /** The matches as they are now, for the store to narrow down. */
+    synchronized TaskSnapshot matched() {
+        return current();
+    }
+
+    /** Switches to a new query and the matches the store collected for it. */
+    synchronized void install(Query next, TaskSnapshot.Editor found) {
+        query = next;
+        matches = found;
+        current = null;
+        sorted = null;
+    }
+
+    /** Drops every match; the store refills them. */
+    synchronized void clear() {
+        install(query, TaskSnapshot.EMPTY.edit());
+    }
+}
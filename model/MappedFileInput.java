@@ -0,0 +1,96 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through memory-mapped windows instead of heap buffers.
+ *
+ * The file is mapped read-only one window at a time, so the bytes are served
+ * straight from the page cache and files larger than one MappedByteBuffer
+ * (2 GiB) can be read as well. Nothing of the file is copied onto the heap
+ * except what the caller asks for.
+ */
+final class MappedFileInput extends InputStream {
+
+    /** Size of each mapped window; large enough that remapping is rare. */
+    private static final long WINDOW_BYTES = 1L << 28;
+
+    private final FileChannel ch;
+    private final long size;
+    private long next;
+    private MappedByteBuffer window;
+
+    /**
+     * Opens and maps the first window of the given file.
+     *
+     * @param path the file to read
+     */
+    MappedFileInput(Path path) throws IOException {
+        this.ch = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = ch.size();
+        mapNext();
+    }
+
+    /**
+     * Reads bytes from the start of the file without consuming them.
+     *
+     * @param dst where to copy the bytes
+     * @return how many bytes were copied
+     */
+    int peek(byte[] dst) {
+        int n = Math.min(dst.length, window.remaining());
+        window.get(window.position(), dst, 0, n);
+        return n;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!window.hasRemaining() && !mapNext()) return -1;
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!window.hasRemaining() && !mapNext()) return -1;
+        int n = Math.min(len, window.remaining());
+        window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            if (!window.hasRemaining() && !mapNext()) break;
+            int step = (int) Math.min(n - skipped, window.remaining());
+            window.position(window.position() + step);
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return window.remaining();
+    }
+
+    /** Closes the channel; the mapping itself is released once unreachable. */
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+
+    private boolean mapNext() throws IOException {
+        if (next >= size && window != null) return false;
+        long len = Math.min(WINDOW_BYTES, size - next);
+        window = ch.map(FileChannel.MapMode.READ_ONLY, next, len);
+        next += len;
+        return len > 0;
+    }
+}
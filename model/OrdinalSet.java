@@ -0,0 +1,49 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A sorted, growable set of task ordinals, used as the posting list of the
+ * secondary indexes. Appends of new (largest) ordinals are O(1).
+ *
+ * Every method synchronizes on the set, so concurrent mutators only contend
+ * when they touch the same posting list.
+ */
+final class OrdinalSet {
+
+    private int[] data = new int[4];
+    private int size;
+
+    synchronized void add(int ordinal) {
+        int at = (size == 0 || data[size - 1] < ordinal) ? size : Arrays.binarySearch(data, 0, size, ordinal);
+        if (at >= 0 && at < size) return;
+        if (at < 0) at = -at - 1;
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        System.arraycopy(data, at, data, at + 1, size - at);
+        data[at] = ordinal;
+        size++;
+    }
+
+    synchronized void remove(int ordinal) {
+        int at = Arrays.binarySearch(data, 0, size, ordinal);
+        if (at < 0) return;
+        System.arraycopy(data, at + 1, data, at, size - at - 1);
+        size--;
+    }
+
+    synchronized boolean contains(int ordinal) {
+        return Arrays.binarySearch(data, 0, size, ordinal) >= 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    synchronized int[] copy() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,307 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable description of which tasks to fetch from a TaskStore.
+ *
+ * Queries are built from predicates on the title, the due date and the
+ * completion state, combined with {@link #and}, {@link #or} and
+ * {@link #not}, and finally given an order and a limit:
+ *
+ * <pre>
+ * Query q = Query.and(Query.titleContains("report"),
+ *                     Query.dueBetween(monday, friday),
+ *                     Query.pending())
+ *                .orderBy(Query.Order.DUE_DATE)
+ *                .limit(20);
+ * List&lt;Task&gt; hits = store.find(q);
+ * </pre>
+ *
+ * Only the order and limit of the query handed to the store apply; those
+ * of nested queries are ignored. {@link TaskStore#explain(Query)} shows
+ * which indexes a query will be answered from.
+ */
+public final class Query {
+
+    /** The order results come back in. */
+    public enum Order {
+        /** The order tasks were added in. */
+        INSERTION,
+        /** Alphabetically by title, ignoring case. */
+        TITLE,
+        /** Earliest due date first; tasks without a date last. */
+        DUE_DATE
+    }
+
+    enum Kind { ALL, TITLE, DUE, STATUS, AND, OR, NOT }
+
+    final Kind kind;
+    /** TITLE: the folded text to look for. */
+    final String needle;
+    /** DUE: inclusive bounds, null for open-ended. */
+    final LocalDate from, to;
+    /** STATUS: true for completed tasks, false for pending ones. */
+    final boolean done;
+    /** AND, OR, NOT: the operands. */
+    final List<Query> operands;
+    final Order order;
+    final int limit;
+
+    private Query(Kind kind, String needle, LocalDate from, LocalDate to, boolean done,
+                  List<Query> operands, Order order, int limit) {
+        this.kind = kind;
+        this.needle = needle;
+        this.from = from;
+        this.to = to;
+        this.done = done;
+        this.operands = operands;
+        this.order = order;
+        this.limit = limit;
+    }
+
+    private Query(Kind kind, String needle, LocalDate from, LocalDate to, boolean done, List<Query> operands) {
+        this(kind, needle, from, to, done, operands, Order.INSERTION, Integer.MAX_VALUE);
+    }
+
+    private static final Query ALL = new Query(Kind.ALL, null, null, null, false, List.of());
+
+    /**
+     * Matches every task.
+     *
+     * @return a query without conditions
+     */
+    public static Query all() { return ALL; }
+
+    /**
+     * Matches tasks whose title contains the given text, ignoring case.
+     *
+     * @param text the text to look for; blank text matches every task
+     * @return the query
+     */
+    public static Query titleContains(String text) {
+        if (text == null || text.isBlank()) return ALL;
+        return new Query(Kind.TITLE, TrigramIndex.fold(text), null, null, false, List.of());
+    }
+
+    /**
+     * Matches tasks due within a date range. Tasks without a due date never match.
+     *
+     * @param from the first due date, inclusive, or null for no lower bound
+     * @param to the last due date, inclusive, or null for no upper bound
+     * @return the query
+     */
+    public static Query dueBetween(LocalDate from, LocalDate to) {
+        return new Query(Kind.DUE, null, from, to, false, List.of());
+    }
+
+    /**
+     * Matches tasks due on the given day.
+     *
+     * @param day the due date
+     * @return the query
+     * @throws IllegalArgumentException if day is null
+     */
+    public static Query dueOn(LocalDate day) {
+        if (day == null) throw new IllegalArgumentException("day required");
+        return dueBetween(day, day);
+    }
+
+    /**
+     * Matches tasks due strictly before the given day.
+     *
+     * @param day the first day that no longer matches
+     * @return the query
+     * @throws IllegalArgumentException if day is null
+     */
+    public static Query dueBefore(LocalDate day) {
+        if (day == null) throw new IllegalArgumentException("day required");
+        return dueBetween(null, day.minusDays(1));
+    }
+
+    /**
+     * Matches completed tasks.
+     *
+     * @return the query
+     */
+    public static Query completed() {
+        return new Query(Kind.STATUS, null, null, null, true, List.of());
+    }
+
+    /**
+     * Matches tasks that are not completed yet.
+     *
+     * @return the query
+     */
+    public static Query pending() {
+        return new Query(Kind.STATUS, null, null, null, false, List.of());
+    }
+
+    /**
+     * Matches tasks that match every given query.
+     *
+     * @param queries the operands
+     * @return the query
+     */
+    public static Query and(Query... queries) {
+        return combine(Kind.AND, queries);
+    }
+
+    /**
+     * Matches tasks that match at least one of the given queries.
+     *
+     * @param queries the operands
+     * @return the query
+     */
+    public static Query or(Query... queries) {
+        return combine(Kind.OR, queries);
+    }
+
+    /**
+     * Matches tasks that do not match the given query.
+     *
+     * @param query the query to negate
+     * @return the query
+     */
+    public static Query not(Query query) {
+        if (query == null) throw new IllegalArgumentException("query required");
+        return new Query(Kind.NOT, null, null, null, false, List.of(query));
+    }
+
+    private static Query combine(Kind kind, Query... queries) {
+        if (queries.length == 0) throw new IllegalArgumentException("at least one query required");
+        List<Query> operands = new ArrayList<>(queries.length);
+        for (Query q : queries) {
+            if (q == null) throw new IllegalArgumentException("query required");
+            // all() is neutral in AND and absorbing in OR
+            if (q.kind == Kind.ALL) {
+                if (kind == Kind.OR) return ALL;
+                continue;
+            }
+            operands.add(q);
+        }
+        if (operands.isEmpty()) return ALL;
+        if (operands.size() == 1) return operands.get(0);
+        return new Query(kind, null, null, null, false, List.copyOf(operands));
+    }
+
+    /**
+     * Returns this query with results in the given order.
+     *
+     * @param order how to order the results
+     * @return a copy of this query
+     */
+    public Query orderBy(Order order) {
+        if (order == null) throw new IllegalArgumentException("order required");
+        return new Query(kind, needle, from, to, done, operands, order, limit);
+    }
+
+    /**
+     * Returns this query capped at the given number of results.
+     *
+     * @param max the maximum number of tasks to return
+     * @return a copy of this query
+     */
+    public Query limit(int max) {
+        if (max < 0) throw new IllegalArgumentException("limit must not be negative");
+        return new Query(kind, needle, from, to, done, operands, order, max);
+    }
+
+    /**
+     * Checks a single task against this query; order and limit play no part.
+     *
+     * @param t the task
+     * @return true if the task matches
+     */
+    public boolean matches(Task t) {
+        switch (kind) {
+            case TITLE:
+                return TrigramIndex.containsFolded(t.title(), needle);
+            case DUE: {
+                LocalDate d = t.Date();
+                return d != null && (from == null || !d.isBefore(from)) && (to == null || !d.isAfter(to));
+            }
+            case STATUS:
+                return t.completed() == done;
+            case AND:
+                for (Query q : operands) if (!q.matches(t)) return false;
+                return true;
+            case OR:
+                for (Query q : operands) if (q.matches(t)) return true;
+                return false;
+            case NOT:
+                return !operands.get(0).matches(t);
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Conservatively decides whether every task matching this query also
+     * matches the other one, so a result of the other query can be narrowed
+     * down instead of recomputed. A false answer only means "not known".
+     *
+     * @param other the broader query
+     * @return true if this query is known to be at least as narrow
+     */
+    boolean implies(Query other) {
+        if (other.kind == Kind.ALL || this == other) return true;
+        // decompose the conjunctions and disjunctions first
+        if (other.kind == Kind.AND) {
+            for (Query q : other.operands) if (!implies(q)) return false;
+            return true;
+        }
+        if (kind == Kind.OR) {
+            for (Query q : operands) if (!q.implies(other)) return false;
+            return true;
+        }
+        if (kind == Kind.AND) {
+            for (Query q : operands) if (q.implies(other)) return true;
+        }
+        if (other.kind == Kind.OR) {
+            for (Query q : other.operands) if (implies(q)) return true;
+            return false;
+        }
+        if (kind != other.kind) return false;
+        switch (kind) {
+            case TITLE:
+                return needle.contains(other.needle);
+            case DUE:
+                return (other.from == null || (from != null && !from.isBefore(other.from)))
+                    && (other.to == null || (to != null && !to.isAfter(other.to)));
+            case STATUS:
+                return done == other.done;
+            case NOT:
+                return other.operands.get(0).implies(operands.get(0));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the conditions of this query in readable form.
+     *
+     * @return e.g. {@code (title ~ "report" AND pending)}
+     */
+    @Override
+    public String toString() {
+        switch (kind) {
+            case TITLE:  return "title ~ \"" + needle + "\"";
+            case DUE:    return "due in [" + (from == null ? "..." : from) + ", " + (to == null ? "..." : to) + "]";
+            case STATUS: return done ? "completed" : "pending";
+            case NOT:    return "NOT " + operands.get(0);
+            case AND:
+            case OR: {
+                StringBuilder sb = new StringBuilder("(");
+                for (int i = 0; i < operands.size(); i++) {
+                    if (i > 0) sb.append(' ').append(kind).append(' ');
+                    sb.append(operands.get(i));
+                }
+                return sb.append(')').toString();
+            }
+            default:     return "all";
+        }
+    }
+}
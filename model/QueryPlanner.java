@@ -0,0 +1,255 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Turns a {@link Query} into a plan over the store's secondary indexes.
+ *
+ * Every leaf is matched to the index that answers it: the trigram index
+ * for title text, the due-date index for date ranges and the completion
+ * bitsets for status. AND starts from its most selective operand and only
+ * intersects further operands that are not much larger than the candidates
+ * it already has; verifying a few tasks is cheaper than fetching a big
+ * posting list to rule them out. OR and NOT are answered from the indexes
+ * when all their operands are, and fall back to a scan otherwise.
+ *
+ * A plan yields candidates, never final results: the store still checks
+ * every candidate against the whole query, so an inexact index (trigrams)
+ * or a task that changed since the index was read never leaks through.
+ */
+final class QueryPlanner {
+
+    /** An AND operand this many times larger than the current candidates is verified instead of fetched. */
+    private static final int INTERSECT_RATIO = 16;
+
+    private final TrigramIndex trigrams;
+    private final DateIndex dates;
+    private final StatusIndex status;
+
+    QueryPlanner(TrigramIndex trigrams, DateIndex dates, StatusIndex status) {
+        this.trigrams = trigrams;
+        this.dates = dates;
+        this.status = status;
+    }
+
+    /**
+     * Plans a query against the current contents of the indexes.
+     *
+     * @param q the query
+     * @return the plan
+     */
+    Plan plan(Query q) {
+        return new Plan(q, node(q, status.liveCount()));
+    }
+
+    /** A planned query: the index operations to run and how the result is finished. */
+    static final class Plan {
+        private final Query query;
+        private final Node root;
+
+        private Plan(Query query, Node root) {
+            this.query = query;
+            this.root = root;
+        }
+
+        /**
+         * Runs the index part of the plan.
+         *
+         * @return the candidate ordinals, or null if every task has to be scanned
+         */
+        BitSet candidates() {
+            return root.fetch();
+        }
+
+        /** @return the plan as indented text, one operation per line */
+        String explain() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Query: ").append(query).append('\n');
+            root.describe(sb, 1);
+            sb.append("  then verify each candidate against the query\n");
+            sb.append("Order: ").append(query.order);
+            if (query.limit != Integer.MAX_VALUE) sb.append(", limit ").append(query.limit);
+            return sb.append('\n').toString();
+        }
+    }
+
+    private Node node(Query q, int universe) {
+        switch (q.kind) {
+            case TITLE: {
+                int estimate = trigrams.estimate(q.needle);
+                if (estimate < 0) return new Scan(q + " (too short for the trigram index)", universe);
+                return new Node("trigram index: " + q, estimate, false) {
+                    @Override BitSet fetch() { return toBits(trigrams.candidates(q.needle)); }
+                };
+            }
+            case DUE:
+                return new Node("date index: " + q, dates.count(q.from, q.to), true) {
+                    @Override BitSet fetch() { return toBits(dates.range(q.from, q.to)); }
+                };
+            case STATUS:
+                return new Node("completion bitset: " + q, q.done ? status.completedCount() : status.pendingCount(), true) {
+                    @Override BitSet fetch() { return status.bits(q.done); }
+                };
+            case AND:
+                return and(q, universe);
+            case OR:
+                return or(q, universe);
+            case NOT: {
+                Node operand = node(q.operands.get(0), universe);
+                if (operand instanceof Scan || !operand.exact) return new Scan(q + " (operand is not exact)", universe);
+                return new Complement(operand, universe);
+            }
+            default:
+                return new Scan("all", universe);
+        }
+    }
+
+    private Node and(Query q, int universe) {
+        List<Node> indexed = new ArrayList<>();
+        List<Node> verified = new ArrayList<>();
+        for (Query operand : q.operands) {
+            Node n = node(operand, universe);
+            if (n instanceof Scan) verified.add(n);
+            else indexed.add(n);
+        }
+        if (indexed.isEmpty()) return new Scan(q + " (no indexed operand)", universe);
+        indexed.sort(Comparator.comparingInt(n -> n.estimate));
+
+        List<Node> used = new ArrayList<>();
+        int estimate = indexed.get(0).estimate;
+        used.add(indexed.get(0));
+        for (int i = 1; i < indexed.size(); i++) {
+            Node n = indexed.get(i);
+            if (n.estimate <= (long) Math.max(estimate, 1) * INTERSECT_RATIO) {
+                used.add(n);
+                estimate = Math.min(estimate, n.estimate);
+            } else {
+                verified.add(n);
+            }
+        }
+        boolean exact = verified.isEmpty();
+        for (Node n : used) exact &= n.exact;
+        if (used.size() == 1 && verified.isEmpty()) return used.get(0);
+        return new Intersect(used, verified, estimate, exact);
+    }
+
+    private Node or(Query q, int universe) {
+        List<Node> operands = new ArrayList<>();
+        long estimate = 0;
+        boolean exact = true;
+        for (Query operand : q.operands) {
+            Node n = node(operand, universe);
+            if (n instanceof Scan) return new Scan(q + " (operand is not indexed)", universe);
+            operands.add(n);
+            estimate += n.estimate;
+            exact &= n.exact;
+        }
+        return new Union(operands, (int) Math.min(estimate, universe), exact);
+    }
+
+    private static BitSet toBits(int[] ordinals) {
+        BitSet bits = new BitSet();
+        for (int o : ordinals) bits.set(o);
+        return bits;
+    }
+
+    /** One step of a plan. */
+    private abstract static class Node {
+        final String label;
+        /** Upper bound on the candidates this step yields. */
+        final int estimate;
+        /** Whether every candidate is known to match, so NOT may complement it. */
+        final boolean exact;
+
+        Node(String label, int estimate, boolean exact) {
+            this.label = label;
+            this.estimate = estimate;
+            this.exact = exact;
+        }
+
+        /** @return the candidate ordinals, or null for every task */
+        abstract BitSet fetch();
+
+        void describe(StringBuilder sb, int depth) {
+            sb.append("  ".repeat(depth)).append(label).append("  (~").append(estimate).append(")\n");
+        }
+    }
+
+    private static final class Scan extends Node {
+        Scan(String what, int universe) { super(what, universe, false); }
+
+        @Override BitSet fetch() { return null; }
+
+        @Override void describe(StringBuilder sb, int depth) {
+            sb.append("  ".repeat(depth)).append("full scan: ").append(label).append("  (~").append(estimate).append(")\n");
+        }
+    }
+
+    private static final class Intersect extends Node {
+        private final List<Node> used;
+        private final List<Node> verified;
+
+        Intersect(List<Node> used, List<Node> verified, int estimate, boolean exact) {
+            super(used.size() == 1 ? "use most selective index" : "intersect", estimate, exact);
+            this.used = used;
+            this.verified = verified;
+        }
+
+        @Override BitSet fetch() {
+            BitSet bits = used.get(0).fetch();
+            for (int i = 1; i < used.size() && !bits.isEmpty(); i++) bits.and(used.get(i).fetch());
+            return bits;
+        }
+
+        @Override void describe(StringBuilder sb, int depth) {
+            super.describe(sb, depth);
+            for (Node n : used) n.describe(sb, depth + 1);
+            for (Node n : verified)
+                sb.append("  ".repeat(depth + 1)).append("verify only: ").append(n.label)
+                  .append("  (~").append(n.estimate).append(")\n");
+        }
+    }
+
+    private static final class Union extends Node {
+        private final List<Node> operands;
+
+        Union(List<Node> operands, int estimate, boolean exact) {
+            super("union", estimate, exact);
+            this.operands = operands;
+        }
+
+        @Override BitSet fetch() {
+            BitSet bits = new BitSet();
+            for (Node n : operands) bits.or(n.fetch());
+            return bits;
+        }
+
+        @Override void describe(StringBuilder sb, int depth) {
+            super.describe(sb, depth);
+            for (Node n : operands) n.describe(sb, depth + 1);
+        }
+    }
+
+    private final class Complement extends Node {
+        private final Node operand;
+
+        Complement(Node operand, int universe) {
+            super("complement", Math.max(0, universe - operand.estimate), true);
+            this.operand = operand;
+        }
+
+        @Override BitSet fetch() {
+            BitSet bits = status.liveBits();
+            bits.andNot(operand.fetch());
+            return bits;
+        }
+
+        @Override void describe(StringBuilder sb, int depth) {
+            super.describe(sb, depth);
+            operand.describe(sb, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Crash-safe replacement of snapshot files.
+ *
+ * The new content is written to a sibling temp file, optionally forced to
+ * disk, and then renamed over the target, so a reader only ever sees the
+ * old file or the complete new one.
+ */
+final class SnapshotFiles {
+
+    /** Receives the stream the snapshot content has to be written to. */
+    interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private SnapshotFiles() {}
+
+    /**
+     * Atomically replaces the target file with the content produced by body.
+     *
+     * @param target the file to replace
+     * @param durability how much to force to disk before returning
+     * @param body writes the new content; the stream must not be closed by it
+     * @throws IOException if writing or renaming fails; the target is then untouched
+     */
+    static void replace(Path target, TaskStore.Durability durability, Body body) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (FileChannel ch = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(ch);
+                body.writeTo(out);
+                out.flush();
+                if (durability != TaskStore.Durability.NONE) ch.force(true);
+            }
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (durability == TaskStore.Durability.FSYNC_FILE_AND_DIR) syncDirectory(target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Renames files that could not be read to "name.corrupt" (or
+     * "name.corrupt.1", "name.corrupt.2", ... if that is taken), all with the
+     * same suffix, so they are kept for recovery and no later save can
+     * replace them. Files that do not exist are skipped.
+     *
+     * @param files the files to move, the main one first
+     * @return the new path of the first file
+     * @throws IOException if a file cannot be moved
+     */
+    static Path setAside(Path... files) throws IOException {
+        String suffix = ".corrupt";
+        for (int n = 1; taken(files, suffix); n++) suffix = ".corrupt." + n;
+        for (Path f : files)
+            if (Files.exists(f)) Files.move(f, f.resolveSibling(f.getFileName() + suffix));
+        return files[0].resolveSibling(files[0].getFileName() + suffix);
+    }
+
+    private static boolean taken(Path[] files, String suffix) {
+        for (Path f : files)
+            if (Files.exists(f.resolveSibling(f.getFileName() + suffix))) return true;
+        return false;
+    }
+
+    /**
+     * Forces the directory entry of the given file to disk so the rename
+     * itself survives a power loss. Not every platform can open a directory
+     * for this (Windows cannot), in which case this is a no-op.
+     */
+    static void syncDirectory(Path file) {
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // directory fsync is best effort
+        }
+    }
+}
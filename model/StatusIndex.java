@@ -0,0 +1,98 @@
+package model;
+
+import java.util.BitSet;
+
+/**
+ * Completion state of every task as two bitsets over task ordinals: one
+ * bit per live task, one per completed task. Pending tasks are the live
+ * bits minus the completed ones.
+ *
+ * Both counts are kept up to date on every change, so "how many are done"
+ * never walks the tasks, and a status condition is a bitwise operation.
+ *
+ * All methods synchronize on the index; every change flips one or two bits.
+ */
+final class StatusIndex {
+
+    private final BitSet live = new BitSet();
+    private final BitSet completed = new BitSet();
+    private int liveCount;
+    private int completedCount;
+
+    /**
+     * Records the completion state of a task, adding it if it is new.
+     *
+     * @param ordinal the task's ordinal
+     * @param done whether the task is completed
+     */
+    synchronized void set(int ordinal, boolean done) {
+        if (!live.get(ordinal)) {
+            live.set(ordinal);
+            liveCount++;
+        }
+        if (completed.get(ordinal) != done) {
+            completed.set(ordinal, done);
+            completedCount += done ? 1 : -1;
+        }
+    }
+
+    /**
+     * Forgets a removed task.
+     *
+     * @param ordinal the task's ordinal
+     */
+    synchronized void remove(int ordinal) {
+        if (!live.get(ordinal)) return;
+        live.clear(ordinal);
+        liveCount--;
+        if (completed.get(ordinal)) {
+            completed.clear(ordinal);
+            completedCount--;
+        }
+    }
+
+    /** Drops every bit; used when the whole store is replaced. */
+    synchronized void clear() {
+        live.clear();
+        completed.clear();
+        liveCount = 0;
+        completedCount = 0;
+    }
+
+    synchronized int completedCount() {
+        return completedCount;
+    }
+
+    synchronized int pendingCount() {
+        return liveCount - completedCount;
+    }
+
+    synchronized int liveCount() {
+        return liveCount;
+    }
+
+    /**
+     * Returns a copy of the bits of every task with the given status.
+     *
+     * @param done true for completed tasks, false for pending ones
+     * @return a bitset over ordinals that the caller may modify
+     */
+    synchronized BitSet bits(boolean done) {
+        return done ? (BitSet) completed.clone() : pendingBits();
+    }
+
+    /**
+     * Returns a copy of the bits of every live task.
+     *
+     * @return a bitset over ordinals that the caller may modify
+     */
+    synchronized BitSet liveBits() {
+        return (BitSet) live.clone();
+    }
+
+    private BitSet pendingBits() {
+        BitSet bits = (BitSet) live.clone();
+        bits.andNot(completed);
+        return bits;
+    }
+}
@@ -0,0 +1,253 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Compact binary snapshot format for tasks.
+ *
+ * <pre>
+ * file   := magic "TSKB", version byte, record*, END flag byte
+ * record := flags byte, id, title varint-length + UTF-8, [epoch-day zigzag varint]
+ * id     := 16 bytes (msb, lsb) if ID_UUID is set, otherwise varint-length + UTF-8
+ * </pre>
+ *
+ * The completed state and the presence of a due date live in the flags
+ * byte. Canonical lower-case UUID ids, which is what TaskId generates,
+ * shrink from 36 characters to 16 bytes; other ids are kept verbatim.
+ */
+final class TaskBinaryCodec {
+
+    static final byte[] MAGIC = { 'T', 'S', 'K', 'B' };
+    static final int VERSION = 1;
+
+    private static final int COMPLETED = 1;
+    private static final int HAS_DATE = 1 << 1;
+    private static final int ID_UUID = 1 << 2;
+    private static final int END = 0x80;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private TaskBinaryCodec() {}
+
+    /**
+     * Checks whether a stream starts like a binary snapshot.
+     *
+     * @param head the first bytes of the file
+     * @param len how many of them are valid
+     * @return true if they carry the binary magic
+     */
+    static boolean hasMagic(byte[] head, int len) {
+        if (len < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) if (head[i] != MAGIC[i]) return false;
+        return true;
+    }
+
+    /** Streams tasks into the binary layout through a reusable byte buffer. */
+    static final class Writer {
+        private final OutputStream out;
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int len;
+
+        /**
+         * Creates a writer and emits the file header.
+         *
+         * @param out the destination; not closed by this class
+         */
+        Writer(OutputStream out) throws IOException {
+            this.out = out;
+            for (byte b : MAGIC) put(b);
+            put(VERSION);
+        }
+
+        /**
+         * Appends one task.
+         *
+         * @param t the task to write
+         */
+        void write(Task t) throws IOException {
+            TaskId id = t.id();
+            boolean uuid = id.isUuid();
+            LocalDate d = t.Date();
+            put((t.completed() ? COMPLETED : 0) | (d != null ? HAS_DATE : 0) | (uuid ? ID_UUID : 0));
+            if (uuid) {
+                putLong(id.msb());
+                putLong(id.lsb());
+            } else {
+                putString(id.value());
+            }
+            putString(t.title());
+            if (d != null) {
+                long day = d.toEpochDay();
+                putVarint((day << 1) ^ (day >> 63));
+            }
+        }
+
+        /** Writes the end marker and pushes everything buffered to the stream. */
+        void finish() throws IOException {
+            put(END);
+            drain();
+            out.flush();
+        }
+
+        /** Writes a string as its UTF-8 length followed by its UTF-8 bytes, without a temporary array. */
+        private void putString(String s) throws IOException {
+            int n = s.length();
+            int bytes = 0;
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) bytes += 1;
+                else if (c < 0x800) bytes += 2;
+                else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) { bytes += 4; i++; }
+                else bytes += 3;
+            }
+            putVarint(bytes);
+            for (int i = 0; i < n; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    put(c);
+                } else if (c < 0x800) {
+                    put(0xC0 | (c >> 6));
+                    put(0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    put(0xF0 | (cp >> 18));
+                    put(0x80 | ((cp >> 12) & 0x3F));
+                    put(0x80 | ((cp >> 6) & 0x3F));
+                    put(0x80 | (cp & 0x3F));
+                } else {
+                    // unpaired surrogates are written as-is, like the JSON path does
+                    put(0xE0 | (c >> 12));
+                    put(0x80 | ((c >> 6) & 0x3F));
+                    put(0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void putVarint(long v) throws IOException {
+            while ((v & ~0x7FL) != 0) {
+                put((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((int) v);
+        }
+
+        private void putLong(long v) throws IOException {
+            for (int shift = 56; shift >= 0; shift -= 8) put((int) (v >>> shift));
+        }
+
+        private void put(int b) throws IOException {
+            if (len == buf.length) drain();
+            buf[len++] = (byte) b;
+        }
+
+        private void drain() throws IOException {
+            out.write(buf, 0, len);
+            len = 0;
+        }
+    }
+
+    /** Streams tasks back out of the binary layout. */
+    static final class Reader {
+        private final InputStream in;
+        private byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+        private int limit;
+
+        /**
+         * Creates a reader and validates the file header.
+         *
+         * @param in the source; not closed by this class
+         * @throws IOException if the stream is not a supported binary snapshot
+         */
+        Reader(InputStream in) throws IOException {
+            this.in = in;
+            for (byte b : MAGIC)
+                if (get() != (b & 0xFF)) throw new IOException("Not a binary task snapshot");
+            int version = get();
+            if (version != VERSION) throw new IOException("Unsupported binary snapshot version " + version);
+        }
+
+        /**
+         * Reads the next task.
+         *
+         * @return the task, or null once the end marker is reached
+         * @throws IOException if the data is truncated or corrupt
+         */
+        Task next() throws IOException {
+            int flags = get();
+            if ((flags & END) != 0) return null;
+            TaskId id;
+            if ((flags & ID_UUID) != 0) {
+                long msb = getLong(), lsb = getLong();
+                id = new TaskId(msb, lsb);
+            } else {
+                id = new TaskId(getString());
+            }
+            String title = getString();
+            long z = ((flags & HAS_DATE) != 0) ? getVarint() : 0;
+            try {
+                LocalDate date = ((flags & HAS_DATE) != 0) ? LocalDate.ofEpochDay((z >>> 1) ^ -(z & 1)) : null;
+                return new Task(id, title, date, (flags & COMPLETED) != 0);
+            } catch (IllegalArgumentException | DateTimeException e) {
+                throw new IOException("Corrupt binary snapshot: " + e.getMessage());
+            }
+        }
+
+        private String getString() throws IOException {
+            long n = getVarint();
+            if (n < 0 || n > Integer.MAX_VALUE - 8) throw new IOException("Corrupt binary snapshot: bad length");
+            int len = (int) n;
+            require(len);
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+
+        private long getVarint() throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = get();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new IOException("Corrupt binary snapshot: varint too long");
+        }
+
+        private long getLong() throws IOException {
+            require(8);
+            long v = 0;
+            for (int i = 0; i < 8; i++) v = (v << 8) | (buf[pos++] & 0xFF);
+            return v;
+        }
+
+        private int get() throws IOException {
+            if (pos == limit) require(1);
+            return buf[pos++] & 0xFF;
+        }
+
+        /** Makes sure the next n bytes are in the buffer, compacting or growing it as needed. */
+        private void require(int n) throws IOException {
+            if (limit - pos >= n) return;
+            if (n > buf.length) {
+                byte[] bigger = new byte[n];
+                System.arraycopy(buf, pos, bigger, 0, limit - pos);
+                buf = bigger;
+            } else {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+            }
+            limit -= pos;
+            pos = 0;
+            while (limit < n) {
+                int r = in.read(buf, limit, buf.length - limit);
+                if (r < 0) throw new EOFException("Truncated binary snapshot");
+                limit += r;
+            }
+        }
+    }
+}
@@ -1,38 +1,115 @@
 package model;
 
-import java.util.Objects;
+import java.nio.ByteBuffer;
 import java.util.UUID;
 
 /**
  * Represents an immutable unique identifier for a Task.
- * Each TaskId wraps a UUID string value.
+ *
+ * Ids are random UUIDs, held as their two 64-bit halves; the string form
+ * is only built when asked for. Ids that are not in the canonical
+ * lower-case UUID form, as found in older task files, are kept as the
+ * string they were read as.
  */
 public final class TaskId {
-    private final String value;
+    /** Length of the canonical string form of a UUID id. */
+    static final int UUID_CHARS = 36;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long msb, lsb;
+    /** The id as read, if it is not a canonical UUID; null otherwise. */
+    private final String legacy;
+    /**
+     * The string form of a UUID id, built on the first call to value().
+     * Not volatile: a thread that sees null just builds an equal string,
+     * and a String is safe to share without synchronization.
+     */
+    private String text;
 
     /**
      * Creates a new TaskId with a randomly generated UUID value.
      */
     public TaskId() {
-        this.value = UUID.randomUUID().toString();
+        UUID u = UUID.randomUUID();
+        this.msb = u.getMostSignificantBits();
+        this.lsb = u.getLeastSignificantBits();
+        this.legacy = null;
     }
 
     /**
      * Creates a TaskId with a specified string value.
      *
      * @param value the string representation of the task identifier
+     * @throws IllegalArgumentException if value is null
      */
     public TaskId(String value) {
-        this.value = value;
+        if (value == null) throw new IllegalArgumentException("id required");
+        if (isCanonicalUuid(value)) {
+            this.msb = hexToLong(value, 0, 8) << 32 | hexToLong(value, 9, 13) << 16 | hexToLong(value, 14, 18);
+            this.lsb = hexToLong(value, 19, 23) << 48 | hexToLong(value, 24, 36);
+            this.legacy = null;
+        } else {
+            this.msb = 0;
+            this.lsb = 0;
+            this.legacy = value;
+        }
+    }
+
+    /** Creates a UUID id from its two halves, as stored by the binary snapshot. */
+    TaskId(long msb, long lsb) {
+        this.msb = msb;
+        this.lsb = lsb;
+        this.legacy = null;
+    }
+
+    /** @return true if this id is a UUID, so {@link #msb()} and {@link #lsb()} describe it */
+    boolean isUuid() { return legacy == null; }
+
+    long msb() { return msb; }
+
+    long lsb() { return lsb; }
+
+    /**
+     * Writes the string form of a UUID id, as {@link #value()} returns it,
+     * into a char array without building the string.
+     *
+     * @param dst the array to write to
+     * @param at the index of the first of the {@link #UUID_CHARS} chars written
+     */
+    void putUuid(char[] dst, int at) {
+        for (int i = 0; i < UUID_CHARS; i++) dst[at + i] = uuidChar(i);
+    }
+
+    /**
+     * Writes the string form of a UUID id into a buffer as ASCII bytes,
+     * which is also its UTF-8 encoding.
+     *
+     * @param dst the buffer to write {@link #UUID_CHARS} bytes to
+     */
+    void putUuid(ByteBuffer dst) {
+        for (int i = 0; i < UUID_CHARS; i++) dst.put((byte) uuidChar(i));
+    }
+
+    /** One char of the canonical form: four dashes among the 32 hex digits of msb then lsb. */
+    private char uuidChar(int i) {
+        if (i == 8 || i == 13 || i == 18 || i == 23) return '-';
+        int digit = i - (i > 23 ? 4 : i > 18 ? 3 : i > 13 ? 2 : i > 8 ? 1 : 0);
+        long half = (digit < 16) ? msb : lsb;
+        return HEX[(int) (half >>> ((15 - (digit & 15)) * 4)) & 0xF];
     }
 
     /**
-     * Returns the string value of this TaskId.
+     * Returns the string value of this TaskId. For a UUID id the string is
+     * built on the first call and kept; the task file and the mutation log
+     * write UUID ids with putUuid instead, so saving does not build it.
      *
      * @return the task identifier as a string
      */
     public String value() {
-        return value;
+        if (legacy != null) return legacy;
+        String s = text;
+        if (s == null) text = s = new UUID(msb, lsb).toString();
+        return s;
     }
 
     /**
@@ -44,7 +121,11 @@ public final class TaskId {
      */
     @Override
     public boolean equals(Object o) {
-        return o instanceof TaskId && Objects.equals(value, ((TaskId) o).value);
+        if (this == o) return true;
+        if (!(o instanceof TaskId)) return false;
+        TaskId other = (TaskId) o;
+        if (legacy != null) return legacy.equals(other.legacy);
+        return other.legacy == null && msb == other.msb && lsb == other.lsb;
     }
 
     /**
@@ -54,7 +135,7 @@ public final class TaskId {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(value);
+        return legacy != null ? legacy.hashCode() : Long.hashCode(msb ^ lsb);
     }
 
     /**
@@ -64,6 +145,30 @@ public final class TaskId {
      */
     @Override
     public String toString() {
-        return value;
+        return value();
+    }
+
+    /** True for the 36-character lower-case form that UUID.toString produces. */
+    static boolean isCanonicalUuid(String s) {
+        if (s.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            char c = s.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hexToLong(String s, int from, int to) {
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '-') continue;
+            v = (v << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return v;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,318 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Single-pass streaming parser for the tasks JSON file.
+ *
+ * Reads characters through a fixed-size buffer and builds each Task as soon
+ * as its object closes, so the whole document is never held in memory.
+ * Understands every escape that JSON allows (and therefore everything the
+ * store writes), and skips unknown keys and values of any shape.
+ */
+final class TaskJsonReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long consumed;
+
+    /** Scratch space for the string currently being decoded, reused for every token. */
+    private final StringBuilder sb = new StringBuilder(64);
+
+    /** Fields of the object currently being parsed. */
+    private String id;
+    private String title;
+    private LocalDate date;
+    private boolean dateInvalid;
+    private boolean completed;
+
+    /**
+     * Creates a reader over the given character stream.
+     *
+     * @param in the source of JSON text; not closed by this class
+     */
+    TaskJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Creates a reader that decodes UTF-8 bytes from the given channel.
+     *
+     * @param ch the channel holding the JSON file
+     */
+    TaskJsonReader(ReadableByteChannel ch) {
+        this(Channels.newReader(ch, StandardCharsets.UTF_8.newDecoder(), -1));
+    }
+
+    /**
+     * Parses the top-level array of tasks and hands every valid task to the sink.
+     * Objects without a title or with an unparsable date are skipped; an empty
+     * document counts as an empty list.
+     *
+     * @param sink receives each task in file order
+     * @return the number of skipped entries
+     * @throws IOException if reading fails or the document is not well-formed
+     */
+    int readTasks(Consumer<Task> sink) throws IOException {
+        int skipped = 0;
+        int c = skipWhitespace();
+        if (c == -1) return 0;
+        expect(c, '[');
+        c = skipWhitespace();
+        if (c == ']') return 0;
+        while (true) {
+            expect(c, '{');
+            Task t = readTask();
+            if (t != null) sink.accept(t);
+            else skipped++;
+            c = skipWhitespace();
+            if (c == ']') break;
+            expect(c, ',');
+            c = skipWhitespace();
+        }
+        if (skipWhitespace() != -1) throw error("trailing data after array");
+        return skipped;
+    }
+
+    /** Parses the members of an object whose '{' was already consumed. */
+    private Task readTask() throws IOException {
+        id = null;
+        title = null;
+        date = null;
+        dateInvalid = false;
+        completed = false;
+
+        int c = skipWhitespace();
+        if (c != '}') {
+            while (true) {
+                expect(c, '"');
+                readString();
+                expect(skipWhitespace(), ':');
+                readMember();
+                c = skipWhitespace();
+                if (c == '}') break;
+                expect(c, ',');
+                c = skipWhitespace();
+            }
+        }
+
+        if (title == null || title.isBlank() || dateInvalid) return null;
+        TaskId tid = (id == null || id.isBlank()) ? new TaskId() : new TaskId(id);
+        return new Task(tid, title, date, completed);
+    }
+
+    /** Reads the value of the member whose key is in sb. */
+    private void readMember() throws IOException {
+        if ("id".contentEquals(sb)) {
+            id = readOptionalString();
+        } else if ("title".contentEquals(sb)) {
+            title = readOptionalString();
+        } else if ("dueDate".contentEquals(sb) || "Date".contentEquals(sb)) {
+            int c = skipWhitespace();
+            if (c == '"') {
+                readString();
+                date = parseDate(sb);
+                dateInvalid = (date == null);
+            } else {
+                skipValue(c);
+            }
+        } else if ("completed".contentEquals(sb)) {
+            int c = skipWhitespace();
+            if (c == 't') {
+                expectLiteral("rue");
+                completed = true;
+            } else if (c == 'f') {
+                expectLiteral("alse");
+                completed = false;
+            } else {
+                skipValue(c);
+            }
+        } else {
+            skipValue(skipWhitespace());
+        }
+    }
+
+    /** Reads a string value, or returns null for JSON null or any other value type. */
+    private String readOptionalString() throws IOException {
+        int c = skipWhitespace();
+        if (c != '"') {
+            skipValue(c);
+            return null;
+        }
+        readString();
+        return sb.toString();
+    }
+
+    /** Decodes a string body (opening quote already consumed) into sb. */
+    private void readString() throws IOException {
+        sb.setLength(0);
+        while (true) {
+            // copy runs of plain characters straight out of the buffer
+            int start = pos;
+            while (pos < limit) {
+                char ch = buf[pos];
+                if (ch == '"' || ch == '\\') break;
+                pos++;
+            }
+            sb.append(buf, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) throw error("unterminated string");
+                continue;
+            }
+            char ch = buf[pos++];
+            if (ch == '"') return;
+            int e = read();
+            switch (e) {
+                case '"':  sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/':  sb.append('/'); break;
+                case 'b':  sb.append('\b'); break;
+                case 'f':  sb.append('\f'); break;
+                case 'n':  sb.append('\n'); break;
+                case 'r':  sb.append('\r'); break;
+                case 't':  sb.append('\t'); break;
+                case 'u':  sb.append(readHexChar()); break;
+                default: throw error("invalid escape");
+            }
+        }
+    }
+
+    private char readHexChar() throws IOException {
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            int d = Character.digit(read(), 16);
+            if (d < 0) throw error("invalid \\u escape");
+            v = (v << 4) | d;
+        }
+        return (char) v;
+    }
+
+    /** Skips a complete value of any type whose first character is c. */
+    private void skipValue(int c) throws IOException {
+        switch (c) {
+            case '"':
+                readString();
+                return;
+            case 't':
+                expectLiteral("rue");
+                return;
+            case 'f':
+                expectLiteral("alse");
+                return;
+            case 'n':
+                expectLiteral("ull");
+                return;
+            case '{': {
+                c = skipWhitespace();
+                if (c == '}') return;
+                while (true) {
+                    expect(c, '"');
+                    readString();
+                    expect(skipWhitespace(), ':');
+                    skipValue(skipWhitespace());
+                    c = skipWhitespace();
+                    if (c == '}') return;
+                    expect(c, ',');
+                    c = skipWhitespace();
+                }
+            }
+            case '[': {
+                c = skipWhitespace();
+                if (c == ']') return;
+                while (true) {
+                    skipValue(c);
+                    c = skipWhitespace();
+                    if (c == ']') return;
+                    expect(c, ',');
+                    c = skipWhitespace();
+                }
+            }
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    while (true) {
+                        if (pos == limit && !fill()) return;
+                        char ch = buf[pos];
+                        if ((ch >= '0' && ch <= '9') || ch == '.' || ch == 'e' || ch == 'E' || ch == '+' || ch == '-') pos++;
+                        else return;
+                    }
+                }
+                throw error("unexpected character");
+        }
+    }
+
+    /**
+     * Parses an ISO yyyy-MM-dd date without going through a formatter,
+     * falling back to LocalDate.parse for anything unusual.
+     *
+     * @return the date, or null if it is not a valid date
+     */
+    private static LocalDate parseDate(CharSequence s) {
+        try {
+            if (s.length() == 10 && s.charAt(4) == '-' && s.charAt(7) == '-') {
+                int y = digits(s, 0, 4), m = digits(s, 5, 7), d = digits(s, 8, 10);
+                if (y >= 0 && m >= 0 && d >= 0) return LocalDate.of(y, m, d);
+            }
+            return LocalDate.parse(s);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    private static int digits(CharSequence s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return -1;
+            v = v * 10 + (ch - '0');
+        }
+        return v;
+    }
+
+    private void expectLiteral(String rest) throws IOException {
+        for (int i = 0; i < rest.length(); i++)
+            if (read() != rest.charAt(i)) throw error("invalid literal");
+    }
+
+    private void expect(int actual, char wanted) throws IOException {
+        if (actual != wanted) throw error("expected '" + wanted + "'");
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) return -1;
+            char ch = buf[pos++];
+            if (ch != ' ' && ch != '\n' && ch != '\r' && ch != '\t') return ch;
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buf[pos++];
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        do { n = in.read(buf, 0, buf.length); } while (n == 0);
+        if (n < 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private IOException error(String what) {
+        return new IOException("Malformed tasks JSON at offset " + (consumed + pos) + ": " + what);
+    }
+}
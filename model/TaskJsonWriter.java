@@ -0,0 +1,152 @@
+package model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+/**
+ * Streams tasks as a JSON array to a Writer.
+ *
+ * Every character is encoded into one reusable buffer that is handed to the
+ * underlying writer whenever it fills up, so serializing a task allocates
+ * nothing and the document never exists as a single String. The output is
+ * the layout TaskJsonReader reads back.
+ */
+final class TaskJsonWriter {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int len;
+    private boolean first = true;
+
+    /**
+     * Creates a writer over the given character stream.
+     *
+     * @param out the destination; not closed by this class
+     */
+    TaskJsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /** Writes the opening bracket of the array. */
+    void begin() throws IOException {
+        put('[');
+    }
+
+    /**
+     * Appends one task object to the array.
+     *
+     * @param t the task to write
+     */
+    void write(Task t) throws IOException {
+        if (!first) put(',');
+        first = false;
+        putRaw("{\"id\":");
+        putId(t.id());
+        putRaw(",\"title\":");
+        putString(t.title());
+        putRaw(",\"dueDate\":");
+        LocalDate d = t.Date();
+        if (d == null) putRaw("null");
+        else putDate(d);
+        putRaw(",\"completed\":");
+        putRaw(t.completed() ? "true" : "false");
+        put('}');
+    }
+
+    /** Writes the closing bracket and pushes everything buffered to the writer. */
+    void end() throws IOException {
+        put(']');
+        drain();
+        out.flush();
+    }
+
+    private void putString(String s) throws IOException {
+        put('"');
+        if (s != null) {
+            for (int i = 0, n = s.length(); i < n; i++) {
+                char ch = s.charAt(i);
+                if (ch == '"' || ch == '\\') {
+                    put('\\');
+                    put(ch);
+                } else if (ch < 0x20) {
+                    putControl(ch);
+                } else {
+                    put(ch);
+                }
+            }
+        }
+        put('"');
+    }
+
+    /** Writes an id; a UUID goes straight from its two halves into the buffer. */
+    private void putId(TaskId id) throws IOException {
+        if (!id.isUuid()) {
+            putString(id.value());
+            return;
+        }
+        if (len + TaskId.UUID_CHARS + 2 > buf.length) drain();
+        buf[len++] = '"';
+        id.putUuid(buf, len);
+        len += TaskId.UUID_CHARS;
+        buf[len++] = '"';
+    }
+
+    private void putControl(char ch) throws IOException {
+        put('\\');
+        switch (ch) {
+            case '\n': put('n'); break;
+            case '\r': put('r'); break;
+            case '\t': put('t'); break;
+            case '\b': put('b'); break;
+            case '\f': put('f'); break;
+            default:
+                putRaw("u00");
+                put(HEX[ch >> 4]);
+                put(HEX[ch & 0xF]);
+        }
+    }
+
+    /** Writes a date as a quoted ISO yyyy-MM-dd string without formatting through a String. */
+    private void putDate(LocalDate d) throws IOException {
+        int y = d.getYear();
+        if (y < 0 || y > 9999) {
+            // outside the four-digit range ISO needs a sign; let LocalDate handle it
+            putString(d.toString());
+            return;
+        }
+        put('"');
+        putDigits(y, 4);
+        put('-');
+        putDigits(d.getMonthValue(), 2);
+        put('-');
+        putDigits(d.getDayOfMonth(), 2);
+        put('"');
+    }
+
+    private void putDigits(int v, int width) throws IOException {
+        if (len + width > buf.length) drain();
+        for (int i = len + width - 1; i >= len; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        len += width;
+    }
+
+    private void putRaw(String s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) put(s.charAt(i));
+    }
+
+    private void put(char ch) throws IOException {
+        if (len == buf.length) drain();
+        buf[len++] = ch;
+    }
+
+    private void drain() throws IOException {
+        out.write(buf, 0, len);
+        len = 0;
+    }
+}
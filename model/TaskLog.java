@@ -0,0 +1,397 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of task mutations that sits next to a snapshot file.
+ *
+ * Every record is framed as {@code [length][crc32][payload]} so a record
+ * torn by a crash is detected and dropped on replay. The payload is either
+ * a PUT carrying the whole task or a REMOVE carrying just its id; both are
+ * idempotent, so replaying a record whose effect is already in the snapshot
+ * is harmless.
+ *
+ * A PUT also carries the task's ordinal. Tasks added concurrently take
+ * their ordinals in one order and may reach the log in another, so replay
+ * hands the ordinal on and the store puts new tasks back in the order they
+ * had.
+ *
+ * Records are staged in memory, in the order the mutations are made, and
+ * written to the file by {@link #sync(long, boolean)}, which forces them
+ * too if asked. A sync writes and forces everything staged before it, so
+ * mutators that sync at the same time share one write and one force
+ * instead of queueing behind each other's. Compaction rotates the live
+ * log to a ".old" segment, writes a snapshot, and then deletes that
+ * segment. Replay reads the rotated segment first, so
+ * a crash at any point of a compaction loses nothing.
+ */
+final class TaskLog implements Closeable {
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int HEADER_BYTES = 8;
+
+    private final Path file;
+    private final Path rotated;
+    /** Replaced by rotate(); guarded by ioLock. */
+    private FileChannel ch;
+    /** Bytes in the live segment, staged ones included; guarded by this. */
+    private long size;
+
+    /** Records staged but not written yet; guarded by this. */
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    /** Where the record being staged starts in pending; guarded by this. */
+    private int recordStart;
+    /** Bytes staged since the log was opened, across rotations; guarded by this. */
+    private long staged;
+    private final CRC32 crc = new CRC32();
+
+    /** Serializes writes to the file; when both are held, it is taken before this. */
+    private final Object ioLock = new Object();
+    /** The staged records sync() is writing, swapped with pending; guarded by ioLock. */
+    private ByteBuffer writing = ByteBuffer.allocate(4096);
+    /** How much of what was staged has been written, and forced; guarded by ioLock. */
+    private long written, forced;
+
+    private TaskLog(Path file) {
+        this.file = file;
+        this.rotated = rotatedFor(file);
+    }
+
+    private static Path rotatedFor(Path file) {
+        return file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    /**
+     * Returns the log file that belongs to the given snapshot.
+     *
+     * @param snapshot the snapshot file path
+     * @return the path of its mutation log
+     */
+    static Path pathFor(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".log");
+    }
+
+    /**
+     * Returns every file the log of the given snapshot may consist of.
+     *
+     * @param snapshot the snapshot file path
+     * @return the live segment and the rotated one
+     */
+    static Path[] segmentsFor(Path snapshot) {
+        Path live = pathFor(snapshot);
+        return new Path[] { live, rotatedFor(live) };
+    }
+
+    /**
+     * Replays the log segments of a snapshot and opens the live one for appending.
+     * A torn or corrupt tail of the live segment is cut off so new records
+     * follow the last valid one.
+     *
+     * @param file the log file
+     * @param put receives every task that was added or changed, in log order,
+     *            with the ordinal it had when logged
+     * @param remove receives every removed id, in log order
+     * @return the log, positioned at its end
+     * @throws IOException if a segment cannot be read or the log cannot be opened
+     */
+    static TaskLog open(Path file, ObjIntConsumer<Task> put, Consumer<TaskId> remove) throws IOException {
+        TaskLog log = new TaskLog(file);
+        if (Files.exists(log.rotated)) replay(log.rotated, put, remove);
+        long valid = Files.exists(file) ? replay(file, put, remove) : 0;
+        log.ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.ch.truncate(valid);
+        log.ch.position(valid);
+        log.size = valid;
+        return log;
+    }
+
+    /**
+     * Stages a record that (re)defines a task.
+     *
+     * @param t the task as it is after the mutation
+     * @param ordinal the task's ordinal in the store
+     * @return the position to {@link #sync(long, boolean)} up to for the record to be written
+     */
+    synchronized long stagePut(Task t, int ordinal) {
+        byte[] legacy = legacyBytes(t.id());
+        byte[] title = t.title().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = begin(1 + 4 + idLength(legacy) + 4 + 4 + title.length + 1 + 8 + 1);
+        b.put(OP_PUT);
+        putId(b, t.id(), legacy);
+        b.putInt(ordinal);
+        b.putInt(title.length).put(title);
+        LocalDate d = t.Date();
+        b.put((byte) (d == null ? 0 : 1));
+        b.putLong(d == null ? 0 : d.toEpochDay());
+        b.put((byte) (t.completed() ? 1 : 0));
+        return commit();
+    }
+
+    /**
+     * Stages a record that removes a task.
+     *
+     * @param id the id of the removed task
+     * @return the position to {@link #sync(long, boolean)} up to for the record to be written
+     */
+    synchronized long stageRemove(TaskId id) {
+        byte[] legacy = legacyBytes(id);
+        ByteBuffer b = begin(1 + 4 + idLength(legacy));
+        b.put(OP_REMOVE);
+        putId(b, id, legacy);
+        return commit();
+    }
+
+    /**
+     * Makes sure every record staged up to a position is written, and
+     * forced to disk if asked. Whatever else was staged by then is written
+     * along with it, so a caller often finds its record already written,
+     * and forced, by another thread's sync and returns without touching
+     * the file.
+     *
+     * @param upTo a position returned by stagePut or stageRemove
+     * @param force whether the records have to be on disk, not just in the file
+     */
+    void sync(long upTo, boolean force) throws IOException {
+        synchronized (ioLock) {
+            if (written < upTo) {
+                long end;
+                synchronized (this) {
+                    ByteBuffer full = pending;
+                    pending = writing;
+                    writing = full;
+                    end = staged;
+                }
+                writing.flip();
+                try {
+                    while (writing.hasRemaining()) ch.write(writing);
+                } finally {
+                    writing.clear();
+                }
+                written = end;
+            }
+            if (force && forced < upTo) {
+                ch.force(false);
+                forced = written;
+            }
+        }
+    }
+
+    /** Writes and forces whatever is staged; caller holds ioLock and this. */
+    private void drain() throws IOException {
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) ch.write(pending);
+        } finally {
+            pending.clear();
+        }
+        written = staged;
+        if (forced < written) {
+            ch.force(false);
+            forced = written;
+        }
+    }
+
+    /** The encoded id if it is not a UUID; null for a UUID, which is written from its two halves. */
+    private static byte[] legacyBytes(TaskId id) {
+        return id.isUuid() ? null : id.value().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int idLength(byte[] legacy) {
+        return (legacy == null) ? TaskId.UUID_CHARS : legacy.length;
+    }
+
+    /** Writes an id as a length-prefixed string, the same layout readString reads. */
+    private static void putId(ByteBuffer b, TaskId id, byte[] legacy) {
+        if (legacy == null) {
+            b.putInt(TaskId.UUID_CHARS);
+            id.putUuid(b);
+        } else {
+            b.putInt(legacy.length).put(legacy);
+        }
+    }
+
+    /** @return the number of bytes in the live segment */
+    synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Moves the live segment aside and starts an empty one. If an earlier
+     * compaction failed and left a rotated segment behind, the live records
+     * are appended to it instead so no record is ever dropped. Staged
+     * records go with the live segment.
+     */
+    void rotate() throws IOException {
+        synchronized (ioLock) {
+            synchronized (this) {
+                drain();
+                ch.close();
+                moveAside();
+                ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                size = 0;
+            }
+        }
+    }
+
+    private void moveAside() throws IOException {
+        if (Files.exists(rotated)) {
+            try (FileChannel src = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel dst = FileChannel.open(rotated, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long pos = 0, n = src.size();
+                while (pos < n) pos += src.transferTo(pos, n - pos, dst);
+                dst.force(true);
+            }
+            Files.delete(file);
+        } else {
+            Files.move(file, rotated, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /** Deletes the rotated segment once a snapshot covering it is safely on disk. */
+    void dropRotated() throws IOException {
+        Files.deleteIfExists(rotated);
+    }
+
+    /** Closes the live segment and deletes both segments; the snapshot holds everything. */
+    void closeAndDelete() throws IOException {
+        synchronized (ioLock) {
+            synchronized (this) {
+                close();
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(rotated);
+            }
+        }
+    }
+
+    /** Writes and forces what is staged, then closes the live segment. */
+    @Override
+    public void close() throws IOException {
+        synchronized (ioLock) {
+            synchronized (this) {
+                try {
+                    drain();
+                } finally {
+                    ch.close();
+                }
+            }
+        }
+    }
+
+    /** Starts a record at the end of pending, growing it if needed, and returns it positioned at the payload. */
+    private ByteBuffer begin(int payload) {
+        if (pending.remaining() < HEADER_BYTES + payload) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.position() + HEADER_BYTES + payload, pending.capacity() * 2));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        recordStart = pending.position();
+        pending.position(recordStart + HEADER_BYTES);
+        return pending;
+    }
+
+    /** Frames the record begun last and returns the staged position it ends at. */
+    private long commit() {
+        int payload = pending.position() - recordStart - HEADER_BYTES;
+        crc.reset();
+        crc.update(pending.array(), recordStart + HEADER_BYTES, payload);
+        pending.putInt(recordStart, payload);
+        pending.putInt(recordStart + 4, (int) crc.getValue());
+        size += HEADER_BYTES + payload;
+        staged += HEADER_BYTES + payload;
+        return staged;
+    }
+
+    /**
+     * Replays the log segments of a snapshot like {@link #open} does, but
+     * only reads them, so the log may be open for appending at the same time.
+     *
+     * @param file the log file
+     * @param put receives every task that was added or changed, in log order,
+     *            with the ordinal it had when logged
+     * @param remove receives every removed id, in log order
+     * @throws IOException if a segment cannot be read
+     */
+    static void read(Path file, ObjIntConsumer<Task> put, Consumer<TaskId> remove) throws IOException {
+        Path rotated = rotatedFor(file);
+        if (Files.exists(rotated)) replay(rotated, put, remove);
+        if (Files.exists(file)) replay(file, put, remove);
+    }
+
+    /**
+     * Applies every intact record of one segment.
+     *
+     * @return the length of the valid prefix of the segment
+     */
+    private static long replay(Path segment, ObjIntConsumer<Task> put, Consumer<TaskId> remove) throws IOException {
+        long valid = 0;
+        CRC32 crc = new CRC32();
+        try (InputStream raw = Files.newInputStream(segment);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024))) {
+            byte[] payload = new byte[256];
+            while (true) {
+                int len, sum;
+                try {
+                    len = in.readInt();
+                    sum = in.readInt();
+                    if (len <= 0 || len > (1 << 26)) break;
+                    if (payload.length < len) payload = new byte[Math.max(len, payload.length * 2)];
+                    in.readFully(payload, 0, len);
+                } catch (EOFException torn) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, len);
+                if ((int) crc.getValue() != sum) break;
+                if (!apply(ByteBuffer.wrap(payload, 0, len), put, remove)) break;
+                valid += HEADER_BYTES + len;
+            }
+        }
+        return valid;
+    }
+
+    private static boolean apply(ByteBuffer b, ObjIntConsumer<Task> put, Consumer<TaskId> remove) {
+        try {
+            byte op = b.get();
+            TaskId id = new TaskId(readString(b));
+            if (op == OP_REMOVE) {
+                remove.accept(id);
+                return true;
+            }
+            if (op != OP_PUT) return false;
+            int ordinal = b.getInt();
+            String title = readString(b);
+            boolean hasDate = b.get() != 0;
+            long epochDay = b.getLong();
+            boolean completed = b.get() != 0;
+            put.accept(new Task(id, title, hasDate ? LocalDate.ofEpochDay(epochDay) : null, completed), ordinal);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static String readString(ByteBuffer b) {
+        int n = b.getInt();
+        String s = new String(b.array(), b.arrayOffset() + b.position(), n, StandardCharsets.UTF_8);
+        b.position(b.position() + n);
+        return s;
+    }
+}
@@ -0,0 +1,445 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * An immutable, point-in-time view of every task in a TaskStore,
+ * in insertion order.
+ *
+ * Snapshots are persistent: every mutation of the store derives the next
+ * snapshot from the current one and publishes it through a volatile
+ * reference, so any number of threads can read one without locking or
+ * copying. The tasks sit in a 32-way trie keyed by their insertion
+ * ordinal; a change copies only the few small nodes on the path to its
+ * task and shares everything else with the previous snapshot. Every node
+ * counts the tasks below it, and the completed ones among them, so
+ * positional access and the completion counts take a handful of steps
+ * however large the store is.
+ *
+ * The same structure holds the matches of a {@link LiveQuery}, which is
+ * why it is keyed by ordinal rather than by position.
+ */
+public final class TaskSnapshot {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    /** Deepest a trie over int ordinals can get; the root then has shift 30. */
+    private static final int MAX_LEVELS = 7;
+
+    static final TaskSnapshot EMPTY = new TaskSnapshot(0, null, 0);
+
+    private final long version;
+    /** Root of the trie; null when there are no tasks. */
+    private final Node root;
+    /** Ordinal bits consumed below the root; 0 when the root is a leaf. */
+    private final int shift;
+    private final List<Task> view = new View();
+
+    private TaskSnapshot(long version, Node root, int shift) {
+        this.version = version;
+        this.root = root;
+        this.shift = (root == null) ? 0 : shift;
+    }
+
+    /** A trie node: tasks in a leaf, child nodes above it. */
+    private static final class Node {
+        final Object[] slots;
+        /** Number of tasks below this node. */
+        int count;
+        /** Number of completed tasks below this node. */
+        int done;
+        /** Token of the edit that made this node and may still change it in place; null if made by with(). */
+        final Object owner;
+
+        Node(Object[] slots, int count, int done, Object owner) {
+            this.slots = slots;
+            this.count = count;
+            this.done = done;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Returns the store version this snapshot was taken at.
+     *
+     * @return the modification version
+     */
+    public long version() { return version; }
+
+    /**
+     * Returns the number of tasks in this snapshot.
+     *
+     * @return the task count
+     */
+    public int size() { return (root == null) ? 0 : root.count; }
+
+    /**
+     * Returns the number of completed tasks in this snapshot.
+     *
+     * @return the completed task count
+     */
+    public int completedCount() { return (root == null) ? 0 : root.done; }
+
+    /**
+     * Returns the task with the given insertion ordinal.
+     *
+     * @param ordinal the task's ordinal
+     * @return the task, or null if this snapshot has none with that ordinal
+     */
+    Task at(int ordinal) {
+        return find(root, shift, ordinal);
+    }
+
+    private static Task find(Node n, int shift, int ordinal) {
+        if (ordinal < 0 || !covers(shift, ordinal)) return null;
+        for (int s = shift; n != null; s -= BITS) {
+            Object o = n.slots[(ordinal >>> s) & MASK];
+            if (s == 0) return (Task) o;
+            n = (Node) o;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the task at the given position in insertion order.
+     *
+     * @param index the position, from 0 to size() - 1
+     * @return the task
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public Task get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        Node n = root;
+        for (int s = shift; s > 0; s -= BITS) {
+            for (Object o : n.slots) {
+                Node child = (Node) o;
+                if (child == null) continue;
+                if (index < child.count) {
+                    n = child;
+                    break;
+                }
+                index -= child.count;
+            }
+        }
+        for (Object o : n.slots) {
+            if (o != null && index-- == 0) return (Task) o;
+        }
+        throw new IllegalStateException("node counts out of step");
+    }
+
+    /**
+     * Returns a run of tasks starting at a position, finding the first one
+     * by the node counts and walking on from there.
+     *
+     * @param offset the position of the first task
+     * @param max the most tasks to return
+     * @return an unmodifiable list of at most max tasks; empty past the end
+     */
+    List<Task> range(int offset, int max) {
+        int n = (int) Math.max(0, Math.min(size(), (long) offset + max) - offset);
+        if (n == 0) return List.of();
+        Task[] out = new Task[n];
+        Walk w = new Walk(offset);
+        for (int i = 0; i < n; i++) out[i] = w.next();
+        return Collections.unmodifiableList(Arrays.asList(out));
+    }
+
+    /**
+     * Hands every task to the action together with its ordinal, in ordinal order.
+     *
+     * @param action receives each task and its ordinal
+     */
+    void forEach(ObjIntConsumer<Task> action) {
+        visit((t, ordinal) -> {
+            action.accept(t, ordinal);
+            return true;
+        });
+    }
+
+    /** Receives tasks with their ordinals; returning false stops the walk. */
+    interface Visitor {
+        boolean visit(Task t, int ordinal);
+    }
+
+    /**
+     * Hands the tasks to the visitor in ordinal order until it returns false.
+     *
+     * @param v receives each task and its ordinal
+     * @return false if the visitor stopped the walk
+     */
+    boolean visit(Visitor v) {
+        return root == null || visit(root, shift, 0, v);
+    }
+
+    private static boolean visit(Node n, int shift, int base, Visitor v) {
+        for (int i = 0; i < WIDTH; i++) {
+            Object o = n.slots[i];
+            if (o == null) continue;
+            int ordinal = base | (i << shift);
+            if (shift == 0 ? !v.visit((Task) o, ordinal) : !visit((Node) o, shift - BITS, ordinal, v)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Hands every ordinal whose task differs between this snapshot and a
+     * later one to the action, with the later snapshot's task (null if it
+     * is gone there). Snapshots share every node their changes did not
+     * touch, so only the nodes on the paths of those changes are visited.
+     *
+     * @param later the snapshot to compare with
+     * @param action receives each changed task and its ordinal
+     */
+    void diff(TaskSnapshot later, ObjIntConsumer<Task> action) {
+        int s = Math.max(shift, later.shift);
+        diff(wrap(root, shift, s, null), wrap(later.root, later.shift, s, null), s, 0, action);
+    }
+
+    private static void diff(Node a, Node b, int shift, int base, ObjIntConsumer<Task> action) {
+        if (a == b) return;
+        for (int i = 0; i < WIDTH; i++) {
+            Object x = (a == null) ? null : a.slots[i];
+            Object y = (b == null) ? null : b.slots[i];
+            if (x == y) continue;
+            int ordinal = base | (i << shift);
+            if (shift == 0) action.accept((Task) y, ordinal);
+            else diff((Node) x, (Node) y, shift - BITS, ordinal, action);
+        }
+    }
+
+    /**
+     * Returns the tasks as an unmodifiable list backed by this snapshot.
+     * Iterate it rather than indexing it: iteration walks the trie once,
+     * while every get(int) descends it from the root.
+     *
+     * @return the tasks in insertion order
+     */
+    public List<Task> tasks() { return view; }
+
+    /**
+     * Returns a snapshot in which the task with the given ordinal is
+     * replaced, leaving this one untouched.
+     *
+     * @param ordinal the task's insertion ordinal
+     * @param task the task, or null to remove it
+     * @return the next snapshot, one version later
+     */
+    TaskSnapshot with(int ordinal, Task task) {
+        if (task == null && !covers(shift, ordinal)) return new TaskSnapshot(version + 1, root, shift);
+        int s = grow(shift, ordinal);
+        Node r = (s == shift) ? root : wrap(root, shift, s, null);
+        Node next = set(r, s, ordinal, task, null);
+        return new TaskSnapshot(version + 1, next, s);
+    }
+
+    /**
+     * Starts a batch of changes on top of this snapshot. The changes are
+     * made in place on nodes the editor created, so many of them cost
+     * little more than with a mutable array.
+     *
+     * @return the editor; its result is one version later
+     */
+    Editor edit() {
+        return new Editor(root, shift, version + 1);
+    }
+
+    /**
+     * Starts a batch of changes on an empty snapshot that replaces this one.
+     *
+     * @return the editor; its result is one version later
+     */
+    Editor editEmpty() {
+        return new Editor(null, 0, version + 1);
+    }
+
+    /**
+     * Collects changes, for one exclusive operation of the store or for a
+     * live query, and turns them into a snapshot when asked. Must be used by
+     * one thread at a time. It may go on after {@link #done()}: the nodes
+     * the snapshot shares are then copied again on their next change.
+     */
+    static final class Editor {
+        private Node root;
+        private int shift;
+        private long version;
+        /** Marks the nodes this editor may change in place; replaced by done(). */
+        private Object token = new Object();
+
+        private Editor(Node root, int shift, long version) {
+            this.root = root;
+            this.shift = shift;
+            this.version = version;
+        }
+
+        /**
+         * Replaces the task with the given ordinal.
+         *
+         * @param ordinal the task's insertion ordinal
+         * @param task the task, or null to remove it
+         */
+        void set(int ordinal, Task task) {
+            if (task == null && !covers(shift, ordinal)) return;
+            int s = grow(shift, ordinal);
+            if (s != shift) root = wrap(root, shift, s, token);
+            root = TaskSnapshot.set(root, s, ordinal, task, token);
+            shift = (root == null) ? 0 : s;
+        }
+
+        /** @return the number of tasks */
+        int size() { return (root == null) ? 0 : root.count; }
+
+        /**
+         * Returns the task with the given ordinal.
+         *
+         * @param ordinal the task's insertion ordinal
+         * @return the task, or null if there is none
+         */
+        Task get(int ordinal) {
+            return find(root, shift, ordinal);
+        }
+
+        /** @return the snapshot holding every change made so far */
+        TaskSnapshot done() {
+            token = new Object();
+            return new TaskSnapshot(version++, root, shift);
+        }
+    }
+
+    /** True if a root with the given shift reaches the ordinal. */
+    private static boolean covers(int shift, int ordinal) {
+        return shift + BITS >= 31 || (ordinal >>> (shift + BITS)) == 0;
+    }
+
+    /** Returns the shift a root needs to reach the ordinal. */
+    private static int grow(int shift, int ordinal) {
+        int s = shift;
+        while (!covers(s, ordinal)) s += BITS;
+        return s;
+    }
+
+    /** Puts levels on top of a root until it has the given shift. */
+    private static Node wrap(Node root, int from, int to, Object owner) {
+        if (root == null) return null;
+        for (int s = from; s < to; s += BITS) {
+            Object[] slots = new Object[WIDTH];
+            slots[0] = root;
+            root = new Node(slots, root.count, root.done, owner);
+        }
+        return root;
+    }
+
+    /**
+     * Sets one slot below a node, copying the nodes on the way unless the
+     * edit with the given token owns them, and returns the node that
+     * replaces it (null once it holds no task).
+     */
+    private static Node set(Node n, int shift, int ordinal, Task task, Object owner) {
+        if (n == null && task == null) return null;
+        Node m;
+        if (n == null) m = new Node(new Object[WIDTH], 0, 0, owner);
+        else if (owner != null && n.owner == owner) m = n;
+        else m = new Node(n.slots.clone(), n.count, n.done, owner);
+
+        int i = (ordinal >>> shift) & MASK;
+        if (shift == 0) {
+            Task old = (Task) m.slots[i];
+            m.slots[i] = task;
+            m.count += (task != null ? 1 : 0) - (old != null ? 1 : 0);
+            m.done += (task != null && task.completed() ? 1 : 0) - (old != null && old.completed() ? 1 : 0);
+        } else {
+            Node child = (Node) m.slots[i];
+            // the child may be changed in place
+            int count = (child == null) ? 0 : child.count, done = (child == null) ? 0 : child.done;
+            Node next = set(child, shift - BITS, ordinal, task, owner);
+            m.slots[i] = next;
+            m.count += (next == null ? 0 : next.count) - count;
+            m.done += (next == null ? 0 : next.done) - done;
+        }
+        return (m.count == 0) ? null : m;
+    }
+
+    private final class View extends AbstractList<Task> {
+        @Override public Task get(int index) { return TaskSnapshot.this.get(index); }
+        @Override public int size() { return TaskSnapshot.this.size(); }
+        @Override public Iterator<Task> iterator() { return new Walk(); }
+    }
+
+    /** Visits the tasks in ordinal order, one trie level per stack entry. */
+    private final class Walk implements Iterator<Task> {
+        private final Node[] nodes = new Node[MAX_LEVELS];
+        private final int[] at = new int[MAX_LEVELS];
+        private final int leaf = shift / BITS;
+        private int depth = -1;
+        private Task next;
+
+        Walk() {
+            if (root != null) {
+                nodes[0] = root;
+                depth = 0;
+            }
+            advance();
+        }
+
+        /** Starts at a position, descending by the node counts. */
+        Walk(int from) {
+            if (from < 0 || from >= size()) return;
+            Node n = root;
+            for (int d = 0; d < leaf; d++) {
+                nodes[d] = n;
+                for (int i = 0; ; i++) {
+                    Node child = (Node) n.slots[i];
+                    if (child == null) continue;
+                    if (from < child.count) {
+                        at[d] = i + 1;
+                        n = child;
+                        break;
+                    }
+                    from -= child.count;
+                }
+            }
+            nodes[leaf] = n;
+            int i = 0;
+            while (n.slots[i] == null || from-- > 0) i++;
+            at[leaf] = i;
+            depth = leaf;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                int i = at[depth];
+                if (i == WIDTH) {
+                    depth--;
+                    continue;
+                }
+                at[depth] = i + 1;
+                Object o = nodes[depth].slots[i];
+                if (o == null) continue;
+                if (depth == leaf) {
+                    next = (Task) o;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) o;
+                at[depth] = 0;
+            }
+        }
+
+        @Override public boolean hasNext() { return next != null; }
+
+        @Override public Task next() {
+            if (next == null) throw new NoSuchElementException();
+            Task t = next;
+            advance();
+            return t;
+        }
+    }
+}
@@ -1,14 +1,39 @@
 package model;
 
+import observer.TaskEvent;
 import observer.TaskObserver;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
 /**
  * The TaskStore class is responsible for storing and managing
  * all tasks in the To-Do List application.
@@ -18,47 +43,252 @@ import java.util.regex.Pattern;
  * 
  * This class uses the Singleton design pattern to make sure
  * there is only one shared TaskStore in the app.
+ *
+ * The store is safe to use from any thread. Readers work on immutable
+ * snapshots that every mutation publishes as part of its change, so they
+ * neither lock nor copy. Reads answered from the secondary indexes take
+ * their candidates only while no change is under way and check them
+ * against the snapshot published at that moment; when changes keep coming
+ * they scan that snapshot instead. Either way every read sees the store as
+ * of one snapshot. Mutations of different tasks run concurrently:
+ * each one is atomic on its own task's entry in a ConcurrentHashMap, and
+ * title uniqueness is claimed with a compare-and-set on the title index.
+ * Operations that need the whole store to hold still (loading, batches,
+ * rotating the log) take the exclusive side of a read/write gate whose
+ * shared side every mutation holds.
  */
 
 public class TaskStore {
 
-   
-    private static TaskStore instance;
     private TaskStore() {}
+
+    /** Lazily created on first use; class initialization makes this thread-safe. */
+    private static final class Holder {
+        static final TaskStore INSTANCE = new TaskStore();
+    }
+
     public static TaskStore getInstance() {
-        if (instance == null) instance = new TaskStore();
-        return instance;
+        return Holder.INSTANCE;
     }
 
   
     private static final Path DEFAULT_JSON_PATH = java.nio.file.Paths.get("tasks.json");
 
-    private static String esc(String s){
-        if (s == null) return "";
-        return s.replace("\\", "\\\\").replace("\"", "\\\"");
-    }
     private static String norm(String s){ return (s == null) ? "" : s.trim().toLowerCase(); }
 
  
-    private final Map<TaskId, Task> tasks = new LinkedHashMap<>();
-    private final List<TaskObserver> observers = new ArrayList<>();
-    private Path ioPath = DEFAULT_JSON_PATH;
+    /** A task's place in insertion order; updates swap the task inside the same slot. */
+    private static final class Slot {
+        final int ordinal;
+        volatile Task task;
+
+        Slot(int ordinal, Task task){
+            this.ordinal = ordinal;
+            this.task = task;
+        }
+    }
+
+    private final ConcurrentHashMap<TaskId, Slot> tasks = new ConcurrentHashMap<>();
+    /** Slots by insertion ordinal, so iteration keeps the order tasks were added in. */
+    private final ConcurrentSkipListMap<Integer, Slot> order = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+    /** Normalized title -> owning task, so uniqueness checks don't scan every task. */
+    private final ConcurrentHashMap<String, TaskId> titleIndex = new ConcurrentHashMap<>();
+    /** Title trigrams -> ordinals, so search only verifies titles that can match. */
+    private final TrigramIndex trigrams = new TrigramIndex();
+    /** Lower-cased titles as a prefix tree, for completion. */
+    private final TitleTrie completions = new TitleTrie();
+    /** Due date -> ordinals, so date filters only visit the tasks in range. */
+    private final DateIndex dates = new DateIndex();
+    /** Live and completed bits by ordinal, with running counts. */
+    private final StatusIndex status = new StatusIndex();
+    private final QueryPlanner planner = new QueryPlanner(trigrams, dates, status);
+    /** Query results kept current by every mutation; see {@link #liveQuery(Query)}. */
+    private final CopyOnWriteArrayList<LiveQuery> liveQueries = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<TaskObserver> observers = new CopyOnWriteArrayList<>();
+    /** Default time events are collected for before a batch goes out; about one frame. */
+    private static final long EVENT_WINDOW_MS = 16;
+    private final EventDispatcher events = new EventDispatcher(observers, EVENT_WINDOW_MS);
+    private volatile Path ioPath = DEFAULT_JSON_PATH;
+
+    /**
+     * Shared by every mutation, exclusive for operations that need a
+     * consistent view of the whole store.
+     */
+    private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+    private volatile Durability durability = Durability.FSYNC_FILE;
+
+    /** Quiet period a burst of mutations must go through before it is flushed. */
+    private static final long FLUSH_DEBOUNCE_MS = 300;
+    /** Upper bound on how long a dirty store may wait for its flush. */
+    private static final long FLUSH_MAX_DELAY_MS = 2000;
+
+    /**
+     * Latest published snapshot. Every mutation replaces it inside its
+     * task's compute, so its version also tells whether there are unsaved
+     * changes (see persistedVersion).
+     */
+    private final AtomicReference<TaskSnapshot> snapshot = new AtomicReference<>(TaskSnapshot.EMPTY);
+    /**
+     * Changes that have started and finished touching the indexes; a batch
+     * or a load counts as one. While they differ a change is under way, and
+     * the indexes may be ahead of the published snapshot; see {@link #readIndexes(java.util.function.Supplier)}.
+     */
+    private final AtomicLong changesStarted = new AtomicLong();
+    private final AtomicLong changesFinished = new AtomicLong();
+    /** How often a read tries to find the indexes at rest before it scans a snapshot instead. */
+    private static final int INDEX_READ_ATTEMPTS = 8;
+    /**
+     * The next snapshot while an exclusive operation (loading, replaying the
+     * log, a batch) is under way; published when it ends, so readers never
+     * see it half done. Only used while the gate is held exclusively.
+     */
+    private TaskSnapshot.Editor staged;
+    private volatile long persistedVersion;
+    /**
+     * Version of the tasks the snapshot file at the save path holds, or -1
+     * if unknown; lets close() and compaction skip rewriting a file that
+     * is already current. Changed under snapshotLock.
+     */
+    private volatile long fileVersion = -1;
+    private final AtomicLong savesWritten = new AtomicLong();
+    private final AtomicLong savesSkipped = new AtomicLong();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "TaskStore-flush");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Guards pendingFlush and dirtySince. */
+    private final Object flushLock = new Object();
+    private ScheduledFuture<?> pendingFlush;
+    private long dirtySince;
+
+    /** Smallest mutation log that is worth folding into a new snapshot. */
+    private static final long MIN_COMPACT_THRESHOLD_BYTES = 1 << 20;
+
+    /** Mutation log appended to by every change once the store is opened with {@link #open(Path)}. */
+    private volatile TaskLog log;
+    /**
+     * Set when the saved tasks could not be loaded. Mutations are refused
+     * and nothing is saved, so what was (not) loaded never replaces the file.
+     */
+    private volatile boolean readOnly;
+    private volatile long compactThreshold = MIN_COMPACT_THRESHOLD_BYTES;
+    /** Serializes snapshot writes (saves, compactions, close); always taken before the gate. */
+    private final Object snapshotLock = new Object();
 
    
     private Path getSavePath() { return (ioPath != null) ? ioPath : DEFAULT_JSON_PATH; }
 
     
-    public void addObserver(TaskObserver o){ if (o != null && !observers.contains(o)) observers.add(o); }
+    public void addObserver(TaskObserver o){ if (o != null) observers.addIfAbsent(o); }
     public void removeObserver(TaskObserver o){ observers.remove(o); }
-    private void notifyObservers(){ for (TaskObserver o: observers) o.onTasksChanged(); }
+    /**
+     * The events of one mutation. They are set as the last step of the
+     * mutation, where they also take their delivery position, and published
+     * once the locks are released, so observers get the events in the order
+     * the changes were made. Publishing belongs in a finally block: a
+     * position that is taken but never published would hold back every
+     * later event.
+     */
+    private final class PendingEvent {
+        private List<TaskEvent> changes;
+        private long seq;
+
+        /** Records the event; call it while the change is still exclusive to the caller, once nothing can fail any more. */
+        void set(TaskEvent e){ setAll(List.of(e)); }
+
+        /** Records the events of a bulk change, in the order they happened; same rules as {@link #set(TaskEvent)}. */
+        void setAll(List<TaskEvent> list){
+            changes = list;
+            seq = events.sequence();
+        }
+
+        /** Hands the events, if any, to the dispatcher thread; blocks only while observers are far behind. */
+        void publish(){
+            if (changes != null) events.publishAll(seq, changes);
+        }
+    }
+
+    /**
+     * Sets how long events are collected before they are delivered as one batch.
+     *
+     * @param millis the window in milliseconds; 0 delivers as soon as the dispatcher is free
+     */
+    public void setEventWindow(long millis){ events.setWindow(millis); }
+
+    /**
+     * Returns how long events are collected before they are delivered.
+     *
+     * @return the window in milliseconds
+     */
+    public long getEventWindow(){ return events.getWindow(); }
+
+    /**
+     * Waits until every change made so far has been delivered to the observers.
+     *
+     * @param timeoutMillis how long to wait at most
+     * @return true if all events were delivered in time
+     */
+    public boolean awaitObservers(long timeoutMillis){ return events.await(timeoutMillis); }
 
 /**
  * Returns all stored tasks.
  *
- * @return a list of all tasks
+ * @return an unmodifiable list of all tasks, backed by the current snapshot
  */
-    public List<Task> all(){ return new ArrayList<>(tasks.values()); }
-    public enum Filter { ALL, TODAY, COMPLETED } 
+    public List<Task> all(){ return snapshot().tasks(); }
+
+    /**
+     * Returns an immutable view of the whole store. This is a single
+     * volatile read: the snapshot was already built by the mutations.
+     * Inside {@link #batch(Consumer)} it includes the batch's changes so far.
+     *
+     * @return the current snapshot
+     */
+    public TaskSnapshot snapshot(){
+        if (gate.isWriteLockedByCurrentThread() && staged != null) return staged.done();
+        return snapshot.get();
+    }
+
+    /**
+     * Puts a task's change into the snapshot: straight into a new published
+     * one for a single mutation, which calls this inside its task's compute,
+     * or into the staged one during an exclusive operation.
+     */
+    private void publish(int ordinal, Task t){
+        if (gate.isWriteLockedByCurrentThread()){
+            if (staged == null) staged = snapshot.get().edit();
+            staged.set(ordinal, t);
+            return;
+        }
+        TaskSnapshot s;
+        do{
+            s = snapshot.get();
+        }while (!snapshot.compareAndSet(s, s.with(ordinal, t)));
+    }
+
+    /** Publishes what the current exclusive operation staged; caller holds the gate exclusively. */
+    private void commitStaged(){
+        if (staged != null) snapshot.set(staged.done());
+        staged = null;
+    }
+    /**
+     * The views the task list can be narrowed to. THIS_WEEK covers the
+     * current Monday-to-Sunday week and OVERDUE the open tasks due before
+     * today. Each one is a canned {@link Query}.
+     */
+    public enum Filter { ALL, TODAY, THIS_WEEK, OVERDUE, PENDING, COMPLETED }
+
+    /**
+     * How hard a save works to make sure the data survives a crash or power loss.
+     * NONE relies on the OS page cache, FSYNC_FILE forces the file contents to
+     * disk before it replaces the old one, and FSYNC_FILE_AND_DIR also forces
+     * the directory entry so the rename itself is durable.
+     */
+    public enum Durability { NONE, FSYNC_FILE, FSYNC_FILE_AND_DIR }
+
     /**
      * Searches for tasks whose titles contain the given query text.
      *
@@ -67,61 +297,320 @@ public class TaskStore {
      *
      * If the query is null or empty, the method returns all tasks.
      * This method is used to enable keyword-based searching in the task list.
+     * Queries of three or more characters are answered from the trigram
+     * index and only the candidate titles are checked; shorter ones scan.
+     * The result is taken from a single snapshot.
      */
     
     public List<Task> search(String q){
         if (q == null || q.isBlank()) return all();
-        String needle = q.toLowerCase();
-        List<Task> result = new ArrayList<>();
-        for (Task t : tasks.values()){
-            String title = (t.title() == null) ? "" : t.title();
-            if (title.toLowerCase().contains(needle)) result.add(t);
+        String needle = TrigramIndex.fold(q);
+        Predicate<Task> check = t -> TrigramIndex.containsFolded(t.title(), needle);
+        IndexRead<int[]> read = readIndexes(() -> trigrams.candidates(needle));
+        if (!read.agreed || read.value == null){
+            List<Task> result = new ArrayList<>();
+            for (Task t : read.snapshot.tasks())
+                if (check.test(t)) result.add(t);
+            return result;
         }
-        return result;
+        return resolve(read.snapshot, read.value, check);
+    }
+    /**
+     * Returns titles that start with the given text, ignoring case, for
+     * type-ahead suggestions.
+     *
+     * @param prefix the text typed so far; leading whitespace is ignored
+     * @param limit the maximum number of titles to return
+     * @return up to limit titles in alphabetical order, or an empty list for a blank prefix
+     *
+     * Answered from a prefix tree, so the cost depends on the prefix length
+     * and the limit rather than on the number of tasks.
+     */
+    public List<String> completeTitle(String prefix, int limit){
+        if (prefix == null || prefix.isBlank()) return List.of();
+        return completions.complete(prefix.stripLeading(), limit);
     }
     /**
      * Returns a list of tasks that match a given search query and filter type.
      *
      * @param q the search text (part of the title to search for)
-     * @param f the filter type (ALL, TODAY, COMPLETED)
+     * @param f the filter type
      * @return a list of tasks that match both the search text and filter criteria
      *
      * If the search query is empty, all tasks are returned.
-     * The method combines text search and date/status filters.
+     * The method combines text search and date/status filters into a
+     * {@link Query} and lets the planner pick the indexes to answer it.
      */
 
     public List<Task> query(String q, Filter f){
-        return applyFilter(search(q), f);
+        return find(queryFor(q, f));
+    }
+
+    /**
+     * Builds the {@link Query} behind {@link #query(String, Filter)}, for use
+     * with {@link #find(Query)} or {@link #liveQuery(Query)}.
+     *
+     * @param q the search text, may be empty
+     * @param f the filter type, null for ALL
+     * @return the query, with date filters evaluated against today
+     */
+    public static Query queryFor(String q, Filter f){
+        return Query.and(Query.titleContains(q), forFilter(f, LocalDate.now()));
     }
+
     /**
-     * Applies the given filter to a base list of tasks.
+     * Returns the tasks matching a query, in its order and up to its limit.
      *
-     * @param base the list of tasks to filter
-     * @param f the filter type (ALL, TODAY, COMPLETED)
-     * @return a list of tasks that satisfy the given filter
+     * @param q the query
+     * @return the matching tasks
      *
-     * Filters tasks based on their date and completion state:
+     * The query is planned against the secondary indexes (see
+     * {@link #explain(Query)}); the candidates they yield are checked against
+     * the full query, so results are exact even where an index is not.
+     * Queries in insertion order stop as soon as the limit is reached. The
+     * result is taken from a single snapshot.
+     */
+    public List<Task> find(Query q){
+        List<Task> result = new ArrayList<>();
+        if (q == null || q.limit == 0) return result;
+        boolean stopEarly = q.order == Query.Order.INSERTION;
+        forEachMatch(q, (ordinal, t) -> {
+            result.add(t);
+            return !(stopEarly && result.size() == q.limit);
+        });
+        if (q.order == Query.Order.TITLE)
+            result.sort(Comparator.comparing(Task::title, String.CASE_INSENSITIVE_ORDER));
+        else if (q.order == Query.Order.DUE_DATE)
+            result.sort(Comparator.comparing(Task::Date, Comparator.nullsLast(Comparator.naturalOrder())));
+        return (result.size() > q.limit) ? new ArrayList<>(result.subList(0, q.limit)) : result;
+    }
+
+    /** Receives matches in insertion order; returning false stops the search. */
+    private interface MatchSink { boolean accept(int ordinal, Task t); }
+
+    /**
+     * Runs the plan of a query and feeds every verified match to the sink.
+     *
+     * @return the snapshot the matches were taken from
+     */
+    private TaskSnapshot forEachMatch(Query q, MatchSink sink){
+        IndexRead<BitSet> read = readIndexes(() -> planner.plan(q).candidates());
+        TaskSnapshot s = read.snapshot;
+        BitSet candidates = read.value;
+        if (!read.agreed || candidates == null){
+            s.visit((t, ordinal) -> !q.matches(t) || sink.accept(ordinal, t));
+            return s;
+        }
+        for (int o = candidates.nextSetBit(0); o >= 0; o = candidates.nextSetBit(o + 1)){
+            Task t = s.at(o);
+            if (t != null && q.matches(t) && !sink.accept(o, t)) break;
+        }
+        return s;
+    }
+
+    /** What a read got from the indexes, and the snapshot to check it against. */
+    private static final class IndexRead<T> {
+        final TaskSnapshot snapshot;
+        final T value;
+        /** False if the indexes never held still; then value is meaningless and the snapshot has to be scanned. */
+        final boolean agreed;
+
+        IndexRead(TaskSnapshot snapshot, T value, boolean agreed){
+            this.snapshot = snapshot;
+            this.value = value;
+            this.agreed = agreed;
+        }
+    }
+
+    /**
+     * Reads the indexes while no change is under way, so what they say
+     * agrees with the snapshot published at that moment. A change that
+     * starts during the read spoils it, and it is tried again; if changes
+     * keep coming, the result says so and the caller scans the snapshot.
+     * The thread holding the gate exclusively is the only one changing
+     * anything, so it reads the indexes as they are, together with what it
+     * has staged.
+     */
+    private <T> IndexRead<T> readIndexes(java.util.function.Supplier<T> read){
+        if (gate.isWriteLockedByCurrentThread()) return new IndexRead<>(snapshot(), read.get(), true);
+        for (int attempt = 0; attempt < INDEX_READ_ATTEMPTS; attempt++){
+            // finished before started: if they match, nothing was under way in between
+            long finished = changesFinished.get();
+            long started = changesStarted.get();
+            if (started != finished){
+                Thread.onSpinWait();
+                continue;
+            }
+            TaskSnapshot s = snapshot.get();
+            T value = read.get();
+            if (changesStarted.get() == started) return new IndexRead<>(s, value, true);
+        }
+        return new IndexRead<>(snapshot.get(), null, false);
+    }
+
+    /** Marks the start of a change to the indexes; see {@link #readIndexes(java.util.function.Supplier)}. */
+    private void beginChange(){ changesStarted.incrementAndGet(); }
+
+    /** Marks the end of a change, once its snapshot is published (or it was undone). */
+    private void endChange(){ changesFinished.incrementAndGet(); }
+
+    /**
+     * Registers a query whose result the store keeps up to date.
+     *
+     * @param q the query
+     * @return the live result; close it when it is no longer needed
+     *
+     * The result is collected from a snapshot while mutations go on.
+     * Mutations are held off only to apply the changes made meanwhile and
+     * register the query, so it misses no change. From then on every
+     * mutation checks only the task it touched against the registered
+     * queries.
+     */
+    public LiveQuery liveQuery(Query q){
+        if (q == null) throw new IllegalArgumentException("query required");
+        LiveQuery live = new LiveQuery(this, q);
+        TaskSnapshot.Editor found = TaskSnapshot.EMPTY.edit();
+        TaskSnapshot from = collect(q, found);
+        gate.writeLock().lock();
+        try{
+            catchUp(q, found, from);
+            live.install(q, found);
+            liveQueries.add(live);
+        }finally{
+            gate.writeLock().unlock();
+        }
+        return live;
+    }
+
+    /**
+     * Points a live query at a new query, narrowing its matches when
+     * possible. The new matches are built outside the gate, so mutators
+     * are only held off for the changes made meanwhile and the swap.
+     */
+    void retarget(LiveQuery live, Query next){
+        TaskSnapshot.Editor found = TaskSnapshot.EMPTY.edit();
+        TaskSnapshot from;
+        if (next.implies(live.query())){
+            from = snapshot();
+            // taken after from, the old matches hold every task of it that can still match
+            TaskSnapshot matched = live.matched();
+            matched.forEach((t, ordinal) -> {
+                Task now = from.at(ordinal);
+                if (now != null && next.matches(now)) found.set(ordinal, now);
+            });
+        }else{
+            from = collect(next, found);
+        }
+        gate.writeLock().lock();
+        try{
+            catchUp(next, found, from);
+            live.install(next, found);
+        }finally{
+            gate.writeLock().unlock();
+        }
+    }
+
+    void unregister(LiveQuery live){ liveQueries.remove(live); }
+
+    /** Puts every match of a query into the editor; returns the snapshot they were taken from. */
+    private TaskSnapshot collect(Query q, TaskSnapshot.Editor found){
+        return forEachMatch(q, (ordinal, t) -> {
+            found.set(ordinal, t);
+            return true;
+        });
+    }
+
+    /**
+     * Brings matches taken from an older snapshot up to date by checking
+     * only the tasks changed since; caller holds the gate exclusively.
+     */
+    private void catchUp(Query q, TaskSnapshot.Editor found, TaskSnapshot from){
+        from.diff(snapshot(), (t, ordinal) -> found.set(ordinal, (t != null && q.matches(t)) ? t : null));
+    }
+
+    /**
+     * Describes how {@link #find(Query)} would answer a query right now:
+     * which indexes it reads, which ones it skips as too broad, and where it
+     * has to fall back to scanning every task.
+     *
+     * @param q the query
+     * @return the plan, one step per line
+     */
+    public String explain(Query q){
+        if (q == null) return "";
+        return planner.plan(q).explain();
+    }
+
+    /**
+     * Returns how many tasks are completed, without looking at any task.
+     * The count is kept by the snapshot, so it agrees with {@link #all()}.
+     *
+     * @return the number of completed tasks
+     */
+    public int completedCount(){ return snapshot().completedCount(); }
+
+    /**
+     * Returns how many tasks are still open, without looking at any task.
+     *
+     * @return the number of pending tasks
+     */
+    public int pendingCount(){
+        TaskSnapshot s = snapshot();
+        return s.size() - s.completedCount();
+    }
+
+    /**
+     * Returns the tasks due within a date range.
+     *
+     * @param from the first due date, inclusive
+     * @param to the last due date, inclusive
+     * @return the matching tasks ordered by due date, ties in insertion order;
+     *         empty if either bound is null or from is after to
+     */
+    public List<Task> dueBetween(LocalDate from, LocalDate to){
+        if (from == null || to == null || from.isAfter(to)) return new ArrayList<>();
+        return find(Query.dueBetween(from, to).orderBy(Query.Order.DUE_DATE));
+    }
+
+    /**
+     * Returns the open tasks whose due date has passed.
+     *
+     * @return the overdue tasks, oldest due date first
+     */
+    public List<Task> overdue(){
+        return find(forFilter(Filter.OVERDUE, LocalDate.now()).orderBy(Query.Order.DUE_DATE));
+    }
+
+    /**
+     * Translates a filter into a query:
      * - TODAY: tasks due today
+     * - THIS_WEEK: tasks due in the current Monday-to-Sunday week
+     * - OVERDUE: open tasks due before today
+     * - PENDING: tasks not completed yet
      * - COMPLETED: tasks marked as completed
-     * - ALL: returns all tasks without filtering
+     * - ALL: every task
      */
-    private List<Task> applyFilter(List<Task> base, Filter f){
-        if (f == null || f == Filter.ALL) return base;
+    private static Query forFilter(Filter f, LocalDate today){
+        if (f == null) return Query.all();
+        switch (f){
+            case TODAY:     return Query.dueOn(today);
+            case THIS_WEEK: return Query.dueBetween(today.with(DayOfWeek.MONDAY), today.with(DayOfWeek.SUNDAY));
+            case OVERDUE:   return Query.and(Query.dueBefore(today), Query.pending());
+            case PENDING:   return Query.pending();
+            case COMPLETED: return Query.completed();
+            default:        return Query.all();
+        }
+    }
 
-        LocalDate today = LocalDate.now();
+    /**
+     * Looks up the task of each ordinal in a snapshot, in the given order,
+     * and keeps the ones that pass the check.
+     */
+    private static List<Task> resolve(TaskSnapshot s, int[] ordinals, Predicate<Task> check){
         List<Task> result = new ArrayList<>();
-        for (Task t : base){
-            LocalDate d = t.Date();
-            switch (f){
-                case TODAY:
-                    if (d != null && d.equals(today)) result.add(t);
-                    break;
-                case COMPLETED:
-                    if (t.completed()) result.add(t);
-                    break;
-                default:
-                    result.add(t);
-            }
+        for (int ordinal : ordinals){
+            Task t = s.at(ordinal);
+            if (t != null && check.test(t)) result.add(t);
         }
         return result;
     }
@@ -131,15 +620,40 @@ public class TaskStore {
     *
     * @param t the task to add
     * @throws IllegalArgumentException if another task has the same title
-    * Saves the task, notifies observers, and writes changes to file.
+    * Saves the task, notifies observers, and schedules a write to file.
     */
     public Task addTask(Task t){
         if (t == null) return null;
-        if (existsTitle(t.title()))
-            throw new IllegalArgumentException("A task with the same title already exists.");
-        tasks.put(t.id(), t);
-        notifyObservers();
-        saveToJson(getSavePath());
+        String key = norm(t.title());
+        PendingEvent pending = new PendingEvent();
+        PendingWrite write = new PendingWrite();
+        gate.readLock().lock();
+        beginChange();
+        try{
+            checkWritable();
+            if (titleIndex.putIfAbsent(key, t.id()) != null)
+                throw new IllegalArgumentException("A task with the same title already exists.");
+            tasks.compute(t.id(), (id, slot) -> {
+                TaskEvent e = (slot == null) ? TaskEvent.added(t) : TaskEvent.updated(slot.task, t);
+                if (slot == null){
+                    slot = new Slot(nextOrdinal.getAndIncrement(), t);
+                    order.put(slot.ordinal, slot);
+                    reindex(slot.ordinal, null, t);
+                }else{
+                    titleIndex.remove(norm(slot.task.title()), id);
+                    reindex(slot.ordinal, slot.task, t);
+                    slot.task = t;
+                }
+                write.put(slot.ordinal, t);
+                pending.set(e);
+                return slot;
+            });
+            write.write();
+        }finally{
+            endChange();
+            gate.readLock().unlock();
+            pending.publish();
+        }
         return t;
     }
 
@@ -147,14 +661,30 @@ public class TaskStore {
  * Toggles the completion state of a task.
  *
  * @param id the ID of the task to toggle
- * Updates the task, notifies observers, and saves the change.
+ * Updates the task, notifies observers, and schedules a save.
  */
     public void toggleCompleted(TaskId id){
-        Task t = tasks.get(id);
-        if (t != null){
-            tasks.put(id, t.withCompleted(!t.completed()));
-            notifyObservers();
-            saveToJson(getSavePath());
+        if (id == null) return;
+        PendingEvent pending = new PendingEvent();
+        PendingWrite write = new PendingWrite();
+        gate.readLock().lock();
+        beginChange();
+        try{
+            checkWritable();
+            tasks.computeIfPresent(id, (k, slot) -> {
+                Task toggled = slot.task.withCompleted(!slot.task.completed());
+                TaskEvent e = TaskEvent.updated(slot.task, toggled);
+                reindex(slot.ordinal, slot.task, toggled);
+                slot.task = toggled;
+                write.put(slot.ordinal, toggled);
+                pending.set(e);
+                return slot;
+            });
+            write.write();
+        }finally{
+            endChange();
+            gate.readLock().unlock();
+            pending.publish();
         }
     }
 
@@ -162,12 +692,30 @@ public class TaskStore {
  * Removes a task with the given ID.
  * 
  * @param id the ID of the task to remove
- * Removes the task if found, notifies observers, and updates the saved file.
+ * Removes the task if found, notifies observers, and schedules a save.
  */
     public void removeTask(TaskId id) {
-        tasks.remove(id);
-        notifyObservers();
-        saveToJson(getSavePath());
+        if (id == null) return;
+        PendingEvent pending = new PendingEvent();
+        PendingWrite write = new PendingWrite();
+        gate.readLock().lock();
+        beginChange();
+        try{
+            checkWritable();
+            tasks.computeIfPresent(id, (k, slot) -> {
+                order.remove(slot.ordinal);
+                titleIndex.remove(norm(slot.task.title()), k);
+                reindex(slot.ordinal, slot.task, null);
+                write.remove(k);
+                pending.set(TaskEvent.removed(slot.task));
+                return null;
+            });
+            write.write();
+        }finally{
+            endChange();
+            gate.readLock().unlock();
+            pending.publish();
+        }
     }
 
     /**
@@ -177,119 +725,927 @@ public class TaskStore {
      * @throws IllegalArgumentException if another task with the same title already exists
      *
      * Replaces the old task with the new one (matched by ID),
-     * notifies all observers, and saves the updated data to file.
+     * notifies all observers, and schedules a save of the updated data.
      */
     public void updateTask(Task updated){
         if (updated == null) return;
-        Task exists = tasks.get(updated.id());
-        if (exists != null){
-            if (existsTitleExcept(updated.title(), updated.id()))
+        TaskId id = updated.id();
+        String key = norm(updated.title());
+        PendingEvent pending = new PendingEvent();
+        PendingWrite write = new PendingWrite();
+        Slot changed;
+        gate.readLock().lock();
+        beginChange();
+        try{
+            checkWritable();
+            if (!tasks.containsKey(id)) return;
+            TaskId owner = titleIndex.putIfAbsent(key, id);
+            if (owner != null && !owner.equals(id))
                 throw new IllegalArgumentException("A task with the same title already exists.");
-            tasks.put(updated.id(), updated);
-            notifyObservers();
-            saveToJson(getSavePath());
+            changed = tasks.computeIfPresent(id, (k, slot) -> {
+                String oldKey = norm(slot.task.title());
+                if (!oldKey.equals(key)) titleIndex.remove(oldKey, k);
+                TaskEvent e = TaskEvent.updated(slot.task, updated);
+                reindex(slot.ordinal, slot.task, updated);
+                slot.task = updated;
+                write.put(slot.ordinal, updated);
+                pending.set(e);
+                return slot;
+            });
+            // the task vanished between the check and the update: give the claimed title back
+            if (changed == null && owner == null) titleIndex.remove(key, id);
+            write.write();
+        }finally{
+            endChange();
+            gate.readLock().unlock();
+            pending.publish();
+        }
+    }
+
+    /**
+     * The operations available inside {@link #batch(Consumer)}. They behave
+     * like the store's own methods of the same meaning, but take effect,
+     * are saved and are announced together when the batch ends.
+     */
+    public interface Mutator {
+        /**
+         * Adds a task, or replaces the task with the same id.
+         *
+         * @param t the task
+         * @return the task
+         * @throws IllegalArgumentException if another task has the same title
+         */
+        Task add(Task t);
+
+        /**
+         * Replaces an existing task (matched by id).
+         *
+         * @param t the new version of the task
+         * @return true if the task existed
+         * @throws IllegalArgumentException if another task has the same title
+         */
+        boolean update(Task t);
+
+        /**
+         * Flips the completion state of a task.
+         *
+         * @param id the task's id
+         * @return true if the task existed
+         */
+        boolean toggle(TaskId id);
+
+        /**
+         * Removes a task.
+         *
+         * @param id the task's id
+         * @return true if the task existed
+         */
+        boolean remove(TaskId id);
+    }
+
+    /**
+     * Applies many changes as one unit.
+     *
+     * @param work receives a {@link Mutator} and makes its changes through it
+     * @throws RuntimeException whatever work throws, after every change it made was undone
+     *
+     * The store is held exclusively while work runs, and the batch counts
+     * as one change for readers, so other threads see either none or all of
+     * it: index-backed reads that overlap the batch scan the snapshot
+     * published before it. Reads made by work itself see its changes so
+     * far. The changes are written to the log with a single flush (or
+     * trigger a single snapshot save) and reach the observers together, in
+     * one delivery. If work throws, every change of the batch is undone and
+     * nothing is saved or announced.
+     */
+    public void batch(Consumer<Mutator> work){
+        if (work == null) return;
+        BatchMutator m = new BatchMutator();
+        PendingEvent pending = new PendingEvent();
+        gate.writeLock().lock();
+        beginChange();
+        try{
+            checkWritable();
+            try{
+                work.accept(m);
+            }catch(RuntimeException | Error e){
+                m.rollback();
+                staged = null;
+                throw e;
+            }
+            commitStaged();
+            if (!m.changes.isEmpty()) persistBatch(m.changes);
+            pending.setAll(m.events);
+        }finally{
+            endChange();
+            gate.writeLock().unlock();
+            pending.publish();
+        }
+    }
+
+    /**
+     * Adds many tasks at once.
+     *
+     * @param toAdd the tasks to add
+     * @return the tasks that were added
+     * @throws IllegalArgumentException if a title is taken or repeated; then nothing is added
+     */
+    public List<Task> addAll(Collection<Task> toAdd){
+        List<Task> added = new ArrayList<>();
+        if (toAdd == null) return added;
+        batch(m -> {
+            for (Task t : toAdd) if (t != null) added.add(m.add(t));
+        });
+        return added;
+    }
+
+    /**
+     * Updates many tasks at once; tasks that do not exist are skipped.
+     *
+     * @param toUpdate the new versions of the tasks
+     * @return how many tasks were updated
+     * @throws IllegalArgumentException if a title is taken or repeated; then nothing is updated
+     */
+    public int updateAll(Collection<Task> toUpdate){
+        if (toUpdate == null) return 0;
+        int[] n = new int[1];
+        batch(m -> {
+            for (Task t : toUpdate) if (t != null && m.update(t)) n[0]++;
+        });
+        return n[0];
+    }
+
+    /**
+     * Removes many tasks at once; ids that do not exist are skipped.
+     *
+     * @param ids the ids of the tasks to remove
+     * @return how many tasks were removed
+     */
+    public int removeAll(Collection<TaskId> ids){
+        if (ids == null) return 0;
+        int[] n = new int[1];
+        batch(m -> {
+            for (TaskId id : ids) if (id != null && m.remove(id)) n[0]++;
+        });
+        return n[0];
+    }
+
+    /**
+     * Carries out the changes of one batch while the gate is held
+     * exclusively, remembering how to undo them and what to save and announce.
+     */
+    private final class BatchMutator implements Mutator {
+        /** Final state of every touched task, null if removed; in first-touch order. */
+        final Map<TaskId, Task> changes = new LinkedHashMap<>();
+        final List<TaskEvent> events = new ArrayList<>();
+        /** How to revert each change, newest last. */
+        private final List<Undo> undo = new ArrayList<>();
+
+        @Override public Task add(Task t){
+            if (t == null) throw new IllegalArgumentException("task required");
+            claimTitle(t);
+            Task before = put(t);
+            events.add(before == null ? TaskEvent.added(t) : TaskEvent.updated(before, t));
+            return t;
+        }
+
+        @Override public boolean update(Task t){
+            if (t == null || !tasks.containsKey(t.id())) return false;
+            claimTitle(t);
+            events.add(TaskEvent.updated(put(t), t));
+            return true;
+        }
+
+        @Override public boolean toggle(TaskId id){
+            Slot slot = (id == null) ? null : tasks.get(id);
+            if (slot == null) return false;
+            Task toggled = slot.task.withCompleted(!slot.task.completed());
+            events.add(TaskEvent.updated(put(toggled), toggled));
+            return true;
+        }
+
+        @Override public boolean remove(TaskId id){
+            Slot slot = (id == null) ? null : tasks.get(id);
+            if (slot == null) return false;
+            undo.add(new Undo(id, slot, slot.task));
+            replayRemove(id);
+            changes.put(id, null);
+            events.add(TaskEvent.removed(slot.task));
+            return true;
+        }
+
+        private void claimTitle(Task t){
+            TaskId owner = titleIndex.get(norm(t.title()));
+            if (owner != null && !owner.equals(t.id()))
+                throw new IllegalArgumentException("A task with the same title already exists: " + t.title());
+        }
+
+        /** Adds or replaces a task and returns the version it replaced, if any. */
+        private Task put(Task t){
+            Slot slot = tasks.get(t.id());
+            Task before = (slot == null) ? null : slot.task;
+            undo.add(new Undo(t.id(), slot, before));
+            replayPut(t);
+            changes.put(t.id(), t);
+            return before;
+        }
+
+        /** Reverts every change, newest first. */
+        void rollback(){
+            for (int i = undo.size() - 1; i >= 0; i--){
+                Undo u = undo.get(i);
+                if (u.slot == null){
+                    replayRemove(u.id);
+                }else if (!tasks.containsKey(u.id)){
+                    // re-insert a removed task at its old position
+                    u.slot.task = u.before;
+                    tasks.put(u.id, u.slot);
+                    order.put(u.slot.ordinal, u.slot);
+                    indexTitle(u.before);
+                    reindex(u.slot.ordinal, null, u.before);
+                }else{
+                    replayPut(u.before);
+                }
+            }
+            changes.clear();
+            events.clear();
+        }
+    }
+
+    /** A task's slot and version before a batch touched it; slot is null if the task was new. */
+    private static final class Undo {
+        final TaskId id;
+        final Slot slot;
+        final Task before;
+
+        Undo(TaskId id, Slot slot, Task before){
+            this.id = id;
+            this.slot = slot;
+            this.before = before;
+        }
+    }
+
+    /**
+     * Records the outcome of a batch: every change is staged in the log,
+     * which is then written and forced once; without a log a single
+     * snapshot flush is scheduled. Caller holds the gate exclusively.
+     */
+    private void persistBatch(Map<TaskId, Task> changes){
+        TaskLog l = log;
+        if (l != null){
+            try{
+                long upTo = 0;
+                for (Map.Entry<TaskId, Task> e : changes.entrySet()){
+                    if (e.getValue() == null) upTo = l.stageRemove(e.getKey());
+                    else upTo = l.stagePut(e.getValue(), tasks.get(e.getKey()).ordinal);
+                }
+                l.sync(upTo, durability != Durability.NONE);
+                logged(l);
+                return;
+            }catch(IOException e){
+                System.err.println("Log append failed: " + e.getMessage());
+            }
         }
+        scheduleFlush();
     }
 
-    public synchronized String toJson(){
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
-        boolean first = true;
-        for (Task t : tasks.values()){
-            if (!first) sb.append(",");
-            first = false;
-            sb.append("{");
-            sb.append("\"id\":\"").append(esc(t.id().value())).append("\",");
-            sb.append("\"title\":\"").append(esc(t.title())).append("\",");
-            sb.append("\"dueDate\":").append(t.Date()==null ? "null" : ("\""+t.Date()+"\"")).append(",");
-            sb.append("\"completed\":").append(t.completed());
-            sb.append("}");
+    /**
+     * Returns all tasks as a JSON document.
+     * Meant for small stores and debugging; saving streams instead.
+     *
+     * @return the JSON text
+     */
+    public String toJson(){
+        StringWriter sw = new StringWriter();
+        try{
+            writeJson(sw, all());
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
         }
-        sb.append("]");
-        return sb.toString();
+        return sw.toString();
+    }
+
+    /** Streams the given tasks, in iteration order, to the given writer. */
+    private static void writeJson(Writer w, Collection<Task> tasks) throws IOException {
+        TaskJsonWriter jw = new TaskJsonWriter(w);
+        jw.begin();
+        for (Task t : tasks) jw.write(t);
+        jw.end();
     }
+
     /**
      * Saves all tasks as a JSON file.
+     * The tasks are written to a temp file next to the target, which then
+     * replaces the target in one atomic rename, so a crash never leaves a
+     * half-written file behind. How much is forced to disk first depends on
+     * the configured {@link Durability}. What is written is an immutable
+     * snapshot, so mutators keep running while the file is being written.
      *
      * @param path the file path to save to
      */
-    public synchronized boolean saveToJson(Path path){
-        try{
-            Files.writeString(
-                path,
-                toJson(),
-                java.nio.file.StandardOpenOption.CREATE,
-                java.nio.file.StandardOpenOption.TRUNCATE_EXISTING,
-                java.nio.file.StandardOpenOption.WRITE
-            );
+    public boolean saveToJson(Path path){
+        synchronized (snapshotLock){
+            TaskSnapshot snap = snapshot();
+            try{
+                SnapshotFiles.replace(path, durability, out -> {
+                    Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                    writeJson(w, snap.tasks());
+                });
+                persistedVersion = snap.version();
+                if (path.equals(getSavePath())) fileVersion = snap.version();
+                savesWritten.incrementAndGet();
+                return true;
+            }catch(IOException e){
+                System.err.println("Auto-save failed: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Saves the tasks only if they changed since the last successful save.
+     * Used by the periodic autosave so an idle store never rewrites its file.
+     * A read-only store (see {@link #isReadOnly()}) never saves.
+     *
+     * @param path the file path to save to
+     * @return true if the file is up to date afterwards
+     */
+    public boolean saveIfDirty(Path path){
+        if (readOnly) return false;
+        if (snapshot.get().version() == persistedVersion){
+            savesSkipped.incrementAndGet();
             return true;
+        }
+        return saveToJson(path);
+    }
+
+    /**
+     * Writes any pending changes right away instead of waiting for the
+     * background flush.
+     */
+    public void flush(){
+        synchronized (flushLock){
+            if (pendingFlush != null) pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        saveIfDirty(getSavePath());
+    }
+
+    /**
+     * Sets how much each save forces to disk before it completes.
+     *
+     * @param d the durability level; null is treated as NONE
+     */
+    public void setDurability(Durability d){ durability = (d == null) ? Durability.NONE : d; }
+
+    /** @return the durability level used by saves */
+    public Durability getDurability(){ return durability; }
+
+    /** @return the number of saves that actually wrote the file */
+    public long getSavesWritten(){ return savesWritten.get(); }
+
+    /**
+     * @return the number of saves skipped because nothing had changed: flushes
+     *         of a store without a log, and the snapshots of close() and
+     *         compaction when the file already held every task
+     */
+    public long getSavesSkipped(){ return savesSkipped.get(); }
+
+    /**
+     * The log record of one mutation. It is staged inside the task's
+     * compute, so the records of a task reach the log in the order its
+     * changes were made, and written once the compute is over but before
+     * the gate is released. The disk then holds up only the mutator
+     * itself, not every thread that wants the same part of the map, and
+     * mutators writing at the same time share one force. Without a log, a
+     * background snapshot flush is scheduled instead.
+     */
+    private final class PendingWrite {
+        private TaskLog log;
+        private long upTo;
+
+        /** Stages a task that was added or changed. */
+        void put(int ordinal, Task t){
+            log = TaskStore.this.log;
+            if (log != null) upTo = log.stagePut(t, ordinal);
+            else scheduleFlush();
+        }
+
+        /** Stages a removed task. */
+        void remove(TaskId id){
+            log = TaskStore.this.log;
+            if (log != null) upTo = log.stageRemove(id);
+            else scheduleFlush();
+        }
+
+        /** Writes the staged record, forcing it as the durability asks; a failure falls back to a snapshot flush. */
+        void write(){
+            if (log == null) return;
+            try{
+                log.sync(upTo, durability != Durability.NONE);
+                logged(log);
+            }catch(IOException e){
+                System.err.println("Log append failed: " + e.getMessage());
+                scheduleFlush();
+            }
+        }
+    }
+
+    /** Marks the latest mutation as persisted and starts a compaction once the log grew too big. */
+    private void logged(TaskLog l){
+        persistedVersion = snapshot.get().version();
+        if (l.size() < compactThreshold) return;
+        synchronized (flushLock){
+            if (pendingFlush == null)
+                pendingFlush = flusher.schedule(this::backgroundFlush, 0, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * (Re)arms the background flush. Each new mutation pushes the flush back
+     * by the debounce delay, but never past FLUSH_MAX_DELAY_MS after the store
+     * first became dirty, so a burst of changes ends up as a single write.
+     */
+    private void scheduleFlush(){
+        synchronized (flushLock){
+            long now = System.currentTimeMillis();
+            if (pendingFlush == null) dirtySince = now;
+            else pendingFlush.cancel(false);
+            long delay = Math.max(0, Math.min(FLUSH_DEBOUNCE_MS, dirtySince + FLUSH_MAX_DELAY_MS - now));
+            pendingFlush = flusher.schedule(this::backgroundFlush, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void backgroundFlush(){
+        synchronized (flushLock){
+            pendingFlush = null;
+        }
+        if (log == null) saveIfDirty(getSavePath());
+        else compact();
+    }
+
+    /**
+     * Folds the mutation log into a fresh snapshot. The snapshot is taken and
+     * the log is rotated while the gate is held exclusively, so the two
+     * match; the snapshot itself is written outside of it, so mutators are
+     * not held up by the disk. If the file already holds those tasks (it
+     * was saved since the last change), only the log is dropped.
+     */
+    private void compact(){
+        synchronized (snapshotLock){
+            TaskLog l;
+            List<Task> current;
+            long version;
+            Path target;
+            gate.writeLock().lock();
+            try{
+                l = log;
+                if (l == null) return;
+                TaskSnapshot s = snapshot.get();
+                current = s.tasks();
+                version = s.version();
+                target = getSavePath();
+                l.rotate();
+            }catch(IOException e){
+                System.err.println("Log rotation failed: " + e.getMessage());
+                return;
+            }finally{
+                gate.writeLock().unlock();
+            }
+            try{
+                if (version == fileVersion){
+                    savesSkipped.incrementAndGet();
+                }else{
+                    SnapshotFiles.replace(target, durability, out -> {
+                        Writer w = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                        writeJson(w, current);
+                    });
+                    fileVersion = version;
+                    savesWritten.incrementAndGet();
+                }
+                l.dropRotated();
+                compactThreshold = Math.max(MIN_COMPACT_THRESHOLD_BYTES, Files.size(target) / 2);
+            }catch(IOException e){
+                System.err.println("Compaction failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Opens the store on a snapshot file and its mutation log.
+     * The snapshot is loaded, the log (if any) is replayed on top of it,
+     * and from then on every mutation is appended to the log instead of
+     * rewriting the snapshot. The log is folded into a new snapshot in the
+     * background whenever it grows past half the snapshot size.
+     *
+     * If the snapshot cannot be parsed, it and its log are renamed with a
+     * ".corrupt" suffix so no later save can take their place, and the
+     * store stays empty. If only the log cannot be read, its segments are
+     * renamed the same way and the store holds the snapshot's tasks.
+     * Either way the store becomes read-only (see {@link #isReadOnly()})
+     * and it is up to the caller how to go on; opening the same path again
+     * then starts from what was left.
+     *
+     * @param path the snapshot file; it does not have to exist yet
+     * @return true if the store was opened, false if the saved tasks could not be loaded
+     * @throws IllegalStateException if the store is already open
+     */
+    public boolean open(Path path){
+        if (path == null) return false;
+        PendingEvent pending = new PendingEvent();
+        gate.writeLock().lock();
+        beginChange();
+        try{
+            if (log != null) throw new IllegalStateException("TaskStore is already open");
+            List<Task> loaded;
+            try{
+                loaded = Files.exists(path) ? readJsonSnapshot(path) : List.of();
+            }catch(IOException e){
+                Path[] segments = TaskLog.segmentsFor(path);
+                setAside(e, path, segments[0], segments[1]);
+                return false;
+            }
+            ioPath = path;
+            replaceAll(loaded);
+            int[] replayed = new int[1];
+            try{
+                // logged ordinals are those of the last session, so they go after the loaded tasks
+                int base = nextOrdinal.get();
+                log = TaskLog.open(TaskLog.pathFor(path), (t, logged) -> {
+                    replayed[0]++;
+                    replayPut(t, base + logged);
+                }, id -> {
+                    replayed[0]++;
+                    replayRemove(id);
+                });
+                readOnly = false;
+            }catch(IOException e){
+                Path[] segments = TaskLog.segmentsFor(path);
+                setAside(new IOException("cannot read the mutation log: " + e.getMessage(), e), segments);
+            }
+            commitStaged();
+            persistedVersion = snapshot.get().version();
+            // with nothing replayed, the file holds exactly what was loaded
+            synchronized (snapshotLock){
+                fileVersion = (log != null && replayed[0] == 0) ? persistedVersion : -1;
+            }
+            pending.set(TaskEvent.bulkLoaded());
+        }finally{
+            endChange();
+            gate.writeLock().unlock();
+            pending.publish();
+        }
+        return !readOnly;
+    }
+
+    /**
+     * Tells whether the store refuses changes because its saved tasks could
+     * not be loaded by {@link #open(Path)} or {@link #loadFromJson(Path)}.
+     * Mutators then throw IllegalStateException and nothing is saved. A
+     * later successful load makes the store writable again.
+     *
+     * @return true if the store is read-only
+     */
+    public boolean isReadOnly(){ return readOnly; }
+
+    /** @throws IllegalStateException if the store is read-only */
+    private void checkWritable(){
+        if (readOnly) throw new IllegalStateException("The saved tasks could not be loaded, so changes are not accepted.");
+    }
+
+    /**
+     * Makes the store read-only after a snapshot failed to parse and renames
+     * the unreadable files, so that nothing saved later can replace them.
+     * Caller holds the gate exclusively.
+     */
+    private void setAside(IOException cause, Path... files){
+        readOnly = true;
+        try{
+            Path kept = SnapshotFiles.setAside(files);
+            System.err.println("Load failed: " + cause.getMessage() + "; the file was kept as " + kept);
         }catch(IOException e){
-            System.err.println("Auto-save failed: " + e.getMessage());
-            return false;
+            System.err.println("Load failed: " + cause.getMessage() + "; it could not be moved aside: " + e.getMessage());
         }
     }
 
-   
-    private static String extractString(String obj, String key){
-        Matcher m = Pattern.compile("\""+key+"\"\\s*:\\s*\"(.*?)\"").matcher(obj);
-        return m.find() ? m.group(1) : null;
+    /**
+     * Persists everything and releases the mutation log. With a log open, a
+     * final snapshot is written, unless the file already holds every task,
+     * and the log deleted; otherwise any pending changes are flushed. Either
+     * way a store that did not change is not written again. Called on
+     * shutdown.
+     */
+    public void close(){
+        if (!events.await(1000)) System.err.println("Some change events were not delivered before closing.");
+        synchronized (flushLock){
+            if (pendingFlush != null) pendingFlush.cancel(false);
+            pendingFlush = null;
+        }
+        synchronized (snapshotLock){
+            TaskLog l = log;
+            if (l == null){
+                saveIfDirty(getSavePath());
+                return;
+            }
+            // keep mutators out until the log is gone, so nothing is appended to a deleted file
+            gate.writeLock().lock();
+            try{
+                if (snapshot.get().version() == fileVersion){
+                    savesSkipped.incrementAndGet();
+                    l.closeAndDelete();
+                }else if (saveToJson(getSavePath())) l.closeAndDelete();
+                else l.close();
+            }catch(IOException e){
+                System.err.println("Closing log failed: " + e.getMessage());
+            }finally{
+                log = null;
+                gate.writeLock().unlock();
+            }
+        }
+    }
+
+    /** Swaps the whole content of the store for freshly loaded tasks; caller holds the gate exclusively. */
+    private void replaceAll(List<Task> loaded){
+        tasks.clear();
+        order.clear();
+        titleIndex.clear();
+        trigrams.clear();
+        completions.clear();
+        dates.clear();
+        status.clear();
+        for (LiveQuery live : liveQueries) live.clear();
+        nextOrdinal.set(0);
+        staged = snapshot.get().editEmpty();
+        for (Task t : loaded) replayPut(t);
+    }
+
+    /** Applies a loaded or replayed task without uniqueness checks; caller holds the gate exclusively. */
+    private void replayPut(Task t){
+        replayPut(t, -1);
+    }
+
+    /**
+     * Applies a replayed task; a new one is placed at the given ordinal, so
+     * tasks come back in the order they had even if they were logged in
+     * another. The ordinal is ignored if it is -1 or taken.
+     */
+    private void replayPut(Task t, int ordinal){
+        Slot slot = tasks.get(t.id());
+        if (slot == null){
+            if (ordinal < 0 || order.containsKey(ordinal)) ordinal = nextOrdinal.get();
+            nextOrdinal.set(Math.max(nextOrdinal.get(), ordinal + 1));
+            slot = new Slot(ordinal, t);
+            tasks.put(t.id(), slot);
+            order.put(slot.ordinal, slot);
+            reindex(slot.ordinal, null, t);
+        }else{
+            unindexTitle(slot.task);
+            reindex(slot.ordinal, slot.task, t);
+            slot.task = t;
+        }
+        indexTitle(t);
     }
-    private static Boolean extractBool(String obj, String key){
-        Matcher m = Pattern.compile("\""+key+"\"\\s*:\\s*(true|false)").matcher(obj);
-        return m.find() ? Boolean.valueOf(m.group(1)) : null;
+
+    private void replayRemove(TaskId id){
+        Slot slot = tasks.remove(id);
+        if (slot == null) return;
+        order.remove(slot.ordinal);
+        unindexTitle(slot.task);
+        reindex(slot.ordinal, slot.task, null);
     }
-    private static LocalDate extractDate(String obj, String key){
-        String s = extractString(obj, key);
-        return (s == null || s.equalsIgnoreCase("null")) ? null : LocalDate.parse(s);
+
+    /**
+     * Moves the secondary indexes, the live queries and the snapshot from
+     * one version of a task to the next, touching only the indexes whose key
+     * changed.
+     * Either side may be null for an added or removed task.
+     */
+    private void reindex(int ordinal, Task before, Task after){
+        String oldTitle = (before == null) ? null : before.title();
+        String newTitle = (after == null) ? null : after.title();
+        if (!Objects.equals(oldTitle, newTitle)){
+            if (oldTitle != null){
+                trigrams.remove(ordinal, oldTitle);
+                completions.remove(oldTitle);
+            }
+            if (newTitle != null){
+                trigrams.add(ordinal, newTitle);
+                completions.add(newTitle);
+            }
+        }
+        LocalDate oldDate = (before == null) ? null : before.Date();
+        LocalDate newDate = (after == null) ? null : after.Date();
+        if (!Objects.equals(oldDate, newDate)){
+            dates.remove(ordinal, oldDate);
+            dates.add(ordinal, newDate);
+        }
+        if (after == null) status.remove(ordinal);
+        else if (before == null || before.completed() != after.completed()) status.set(ordinal, after.completed());
+        for (LiveQuery live : liveQueries) live.apply(ordinal, after);
+        publish(ordinal, after);
     }
 
+    /** Installs freshly loaded tasks under the exclusive gate and tells the observers. */
+    private void install(List<Task> loaded){
+        PendingEvent pending = new PendingEvent();
+        gate.writeLock().lock();
+        beginChange();
+        try{
+            replaceAll(loaded);
+            readOnly = false;
+            commitStaged();
+            persistedVersion = snapshot.get().version();
+            pending.set(TaskEvent.bulkLoaded());
+        }finally{
+            endChange();
+            gate.writeLock().unlock();
+            pending.publish();
+        }
+    }
 
 /**
  * Loads tasks from a JSON file.
  *
  * @param path the file path to load from
+ * @return true if the file was loaded or does not exist yet; false if it
+ *         could not be parsed, in which case it is renamed with a ".corrupt"
+ *         suffix and the store becomes read-only, as with {@link #open(Path)}
  * Loads all valid tasks and skips broken entries.
  */
-    public synchronized void loadFromJson(Path path){
+    public boolean loadFromJson(Path path){
+        if (path == null) return false;
+        List<Task> loaded;
         try{
-            if (path == null || !Files.exists(path)) return;
-            String raw = Files.readString(path).trim();
-            if (raw.isEmpty() || raw.equals("[]")) return;
-
-            tasks.clear();
-
-            Matcher m = Pattern.compile("\\{([^}]*)\\}").matcher(raw);
-            while (m.find()){
-                String obj = m.group();
-
-                String idStr = extractString(obj, "id");
-                String title = extractString(obj, "title");
-                LocalDate date = extractDate(obj, "Date");
-                Boolean completed = extractBool(obj, "completed");
-                if (completed == null) completed = false;
-                if (title == null || title.isBlank()) continue;
-
-                TaskId tid = (idStr == null || idStr.isBlank()) ? new TaskId() : new TaskId(idStr);
-                Task t = new Task(tid, title, date, completed);
-                tasks.put(t.id(), t);
-            }
-               notifyObservers();
-        }catch(Exception e){
-            System.err.println("Load failed: " + e.getMessage());
+            loaded = Files.exists(path) ? readJsonSnapshot(path) : List.of();
+        }catch(IOException e){
+            return loadFailed(e, path);
         }
+        ioPath = path;
+        if (loaded.isEmpty()) readOnly = false;
+        else install(loaded);
+        return true;
     }
 
-  
-    private boolean existsTitle(String title){
-        String n = norm(title);
-        for (Task t : tasks.values())
-            if (norm(t.title()).equals(n)) return true;
+    /**
+     * Sets an unreadable snapshot aside for the load methods, which run
+     * without the gate.
+     *
+     * @return false, for the caller to return
+     */
+    private boolean loadFailed(IOException cause, Path path){
+        gate.writeLock().lock();
+        try{
+            setAside(cause, path);
+        }finally{
+            gate.writeLock().unlock();
+        }
         return false;
     }
-    private boolean existsTitleExcept(String title, TaskId exclude){
-        String n = norm(title);
-        for (Task t : tasks.values())
-            if (!t.id().equals(exclude) && norm(t.title()).equals(n)) return true;
-        return false;
+
+    /** Streams a JSON snapshot into a list, reporting skipped entries. */
+    private static List<Task> readJsonSnapshot(Path path) throws IOException {
+        List<Task> loaded = new ArrayList<>();
+        int skipped;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)){
+            skipped = new TaskJsonReader(ch).readTasks(loaded::add);
+        }
+        if (skipped > 0) System.err.println("Load skipped " + skipped + " broken task(s)");
+        return loaded;
     }
+
+    /**
+     * Saves all tasks in the compact binary snapshot format.
+     * Written atomically like {@link #saveToJson(Path)}.
+     *
+     * @param path the file path to save to
+     * @return true if the snapshot was written
+     */
+    public boolean saveBinary(Path path){
+        List<Task> snapshot = all();
+        try{
+            SnapshotFiles.replace(path, durability, out -> writeBinary(out, snapshot));
+            return true;
+        }catch(IOException e){
+            System.err.println("Binary save failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Loads tasks from a binary snapshot written by {@link #saveBinary(Path)}.
+     *
+     * @param path the file path to load from
+     * @return true if the file was loaded or does not exist, in which case
+     *         the current tasks are kept; false if it could not be read, in
+     *         which case it is set aside as with {@link #loadFromJson(Path)}
+     */
+    public boolean loadBinary(Path path){
+        if (path == null) return false;
+        if (!Files.exists(path)) return true;
+        List<Task> loaded = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(path)){
+            readBinary(in, loaded::add);
+        }catch(IOException e){
+            return loadFailed(new IOException("cannot read the binary snapshot: " + e.getMessage(), e), path);
+        }
+        install(loaded);
+        return true;
+    }
+
+    /**
+     * Loads tasks by memory-mapping the snapshot instead of reading it
+     * through heap buffers, so startup memory stays close to the size of
+     * the loaded tasks themselves. Works with both the JSON and the binary
+     * layout; the format is recognized from the first bytes of the file.
+     *
+     * @param path the file path to load from
+     * @return true if the file was loaded or does not exist, in which case
+     *         the current tasks are kept; false if it could not be read, in
+     *         which case it is set aside as with {@link #loadFromJson(Path)}
+     */
+    public boolean loadMapped(Path path){
+        if (path == null) return false;
+        if (!Files.exists(path)) return true;
+        List<Task> loaded = new ArrayList<>();
+        try (MappedFileInput in = new MappedFileInput(path)){
+            byte[] head = new byte[TaskBinaryCodec.MAGIC.length];
+            if (TaskBinaryCodec.hasMagic(head, in.peek(head))){
+                readBinary(in, loaded::add);
+            }else{
+                Reader r = new InputStreamReader(in, StandardCharsets.UTF_8.newDecoder());
+                int skipped = new TaskJsonReader(r).readTasks(loaded::add);
+                if (skipped > 0) System.err.println("Load skipped " + skipped + " broken task(s)");
+            }
+        }catch(IOException e){
+            return loadFailed(new IOException("cannot map the snapshot: " + e.getMessage(), e), path);
+        }
+        install(loaded);
+        return true;
+    }
+
+    /**
+     * Converts a JSON tasks file into the binary snapshot format,
+     * streaming one task at a time.
+     *
+     * @param json the JSON file to read
+     * @param binary the binary file to write
+     * @return true if the conversion succeeded
+     */
+    public static boolean convertJsonToBinary(Path json, Path binary){
+        try (FileChannel ch = FileChannel.open(json, StandardOpenOption.READ)){
+            SnapshotFiles.replace(binary, Durability.FSYNC_FILE, out -> {
+                TaskBinaryCodec.Writer w = new TaskBinaryCodec.Writer(out);
+                try{
+                    new TaskJsonReader(ch).readTasks(t -> {
+                        try{ w.write(t); }catch(IOException e){ throw new UncheckedIOException(e); }
+                    });
+                }catch(UncheckedIOException e){
+                    throw e.getCause();
+                }
+                w.finish();
+            });
+            return true;
+        }catch(IOException e){
+            System.err.println("Conversion failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Converts a binary snapshot back into the JSON tasks layout,
+     * streaming one task at a time.
+     *
+     * @param binary the binary file to read
+     * @param json the JSON file to write
+     * @return true if the conversion succeeded
+     */
+    public static boolean convertBinaryToJson(Path binary, Path json){
+        try (InputStream in = Files.newInputStream(binary)){
+            SnapshotFiles.replace(json, Durability.FSYNC_FILE, out -> {
+                TaskJsonWriter w = new TaskJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                w.begin();
+                TaskBinaryCodec.Reader r = new TaskBinaryCodec.Reader(in);
+                for (Task t = r.next(); t != null; t = r.next()) w.write(t);
+                w.end();
+            });
+            return true;
+        }catch(IOException e){
+            System.err.println("Conversion failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void writeBinary(OutputStream out, Collection<Task> tasks) throws IOException {
+        TaskBinaryCodec.Writer w = new TaskBinaryCodec.Writer(out);
+        for (Task t : tasks) w.write(t);
+        w.finish();
+    }
+
+    private static void readBinary(InputStream in, Consumer<Task> sink) throws IOException {
+        TaskBinaryCodec.Reader r = new TaskBinaryCodec.Reader(in);
+        for (Task t = r.next(); t != null; t = r.next()) sink.accept(t);
+    }
+
+    private void indexTitle(Task t){ titleIndex.put(norm(t.title()), t.id()); }
+    private void unindexTitle(Task t){ titleIndex.remove(norm(t.title()), t.id()); }
 }
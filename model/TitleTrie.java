@@ -0,0 +1,190 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Path-compressed prefix tree over lower-cased task titles, used for
+ * type-ahead completion.
+ *
+ * Each edge carries a whole run of characters, so the tree has at most
+ * about two nodes per title. Empty branches are pruned on removal, which
+ * means every subtree leads to at least one title: collecting the first K
+ * completions under a prefix visits O(prefix length + K * depth) nodes,
+ * however many titles the store holds. Completions come back in
+ * alphabetical order of their lower-cased form.
+ *
+ * All methods synchronize on the trie; every operation is short.
+ */
+final class TitleTrie {
+
+    private static final class Node {
+        /** Lower-cased characters on the edge leading into this node. */
+        String label;
+        /** Children sorted by the first character of their label. */
+        Node[] kids = NO_KIDS;
+        /** Original titles whose lower-cased form ends exactly here, or null. */
+        List<String> titles;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int find(char c) {
+            int lo = 0, hi = kids.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char k = kids[mid].label.charAt(0);
+                if (k < c) lo = mid + 1;
+                else if (k > c) hi = mid - 1;
+                else return mid;
+            }
+            return -(lo + 1);
+        }
+
+        void insertKid(int at, Node kid) {
+            Node[] n = new Node[kids.length + 1];
+            System.arraycopy(kids, 0, n, 0, at);
+            n[at] = kid;
+            System.arraycopy(kids, at, n, at + 1, kids.length - at);
+            kids = n;
+        }
+
+        void removeKid(int at) {
+            Node[] n = new Node[kids.length - 1];
+            System.arraycopy(kids, 0, n, 0, at);
+            System.arraycopy(kids, at + 1, n, at, kids.length - at - 1);
+            kids = (n.length == 0) ? NO_KIDS : n;
+        }
+    }
+
+    private static final Node[] NO_KIDS = new Node[0];
+
+    private final Node root = new Node("");
+
+    /**
+     * Adds a title.
+     *
+     * @param title the title as the user typed it
+     */
+    synchronized void add(String title) {
+        String key = TrigramIndex.fold(title);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int at = node.find(key.charAt(i));
+            if (at < 0) {
+                Node leaf = new Node(key.substring(i));
+                node.insertKid(-at - 1, leaf);
+                node = leaf;
+                i = key.length();
+                break;
+            }
+            Node kid = node.kids[at];
+            int common = commonPrefix(kid.label, key, i);
+            if (common < kid.label.length()) {
+                // split the edge at the point where the key diverges
+                Node mid = new Node(kid.label.substring(0, common));
+                kid.label = kid.label.substring(common);
+                mid.kids = new Node[] { kid };
+                node.kids[at] = mid;
+                kid = mid;
+            }
+            node = kid;
+            i += common;
+        }
+        if (node.titles == null) node.titles = new ArrayList<>(1);
+        node.titles.add(title);
+    }
+
+    /**
+     * Removes one occurrence of a title, pruning and re-merging nodes that
+     * became unnecessary.
+     *
+     * @param title the title exactly as it was added
+     */
+    synchronized void remove(String title) {
+        remove(root, TrigramIndex.fold(title), 0, title);
+    }
+
+    /** @return true if the child that was descended into should be dropped by the caller */
+    private boolean remove(Node node, String key, int i, String title) {
+        if (i == key.length()) {
+            if (node.titles == null || !node.titles.remove(title)) return false;
+            if (node.titles.isEmpty()) node.titles = null;
+            return node.titles == null && node.kids.length == 0;
+        }
+        int at = node.find(key.charAt(i));
+        if (at < 0) return false;
+        Node kid = node.kids[at];
+        if (!key.startsWith(kid.label, i)) return false;
+        if (remove(kid, key, i + kid.label.length(), title)) {
+            node.removeKid(at);
+        } else if (kid.titles == null && kid.kids.length == 1) {
+            // a pass-through node: fold it into its only child
+            Node only = kid.kids[0];
+            only.label = kid.label + only.label;
+            node.kids[at] = only;
+        }
+        return node != root && node.titles == null && node.kids.length == 0;
+    }
+
+    /** Drops every title. */
+    synchronized void clear() {
+        root.kids = NO_KIDS;
+        root.titles = null;
+    }
+
+    /**
+     * Returns up to limit titles that start with the given prefix, ignoring case.
+     *
+     * @param prefix the text typed so far
+     * @param limit the maximum number of completions
+     * @return the completions in alphabetical order of their lower-cased form
+     */
+    synchronized List<String> complete(String prefix, int limit) {
+        List<String> out = new ArrayList<>(Math.min(limit, 16));
+        if (limit <= 0) return out;
+        String key = TrigramIndex.fold(prefix);
+        Node node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int at = node.find(key.charAt(i));
+            if (at < 0) return out;
+            Node kid = node.kids[at];
+            int common = commonPrefix(kid.label, key, i);
+            if (i + common == key.length()) {
+                // the prefix ends on this edge (or exactly at its node)
+                node = kid;
+                i = key.length();
+                break;
+            }
+            if (common < kid.label.length()) return out;
+            node = kid;
+            i += common;
+        }
+        collect(node, limit, out);
+        return out;
+    }
+
+    private static void collect(Node node, int limit, List<String> out) {
+        if (node.titles != null) {
+            for (String t : node.titles) {
+                if (out.size() == limit) return;
+                out.add(t);
+            }
+        }
+        for (Node kid : node.kids) {
+            if (out.size() == limit) return;
+            collect(kid, limit, out);
+        }
+    }
+
+    /** Length of the common prefix of label and key[from..]. */
+    private static int commonPrefix(String label, String key, int from) {
+        int n = Math.min(label.length(), key.length() - from);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(from + i)) i++;
+        return i;
+    }
+}
@@ -0,0 +1,154 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from lower-cased character trigrams of task titles to the
+ * ordinals of the tasks containing them.
+ *
+ * A substring query of three or more characters can only match titles that
+ * contain every trigram of the query, so intersecting those posting lists
+ * (starting from the shortest) narrows the candidates to a handful before
+ * any title is looked at. Candidates still have to be verified, since
+ * sharing all trigrams does not guarantee a substring match.
+ *
+ * Postings are {@link OrdinalSet}s, each guarded by its own monitor, so
+ * concurrent mutators only contend when they touch the same trigram. A
+ * posting is changed inside its map entry's compute, so the list of a
+ * trigram no title has any more can be dropped without racing an add.
+ */
+final class TrigramIndex {
+
+    private final ConcurrentHashMap<Long, OrdinalSet> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Indexes a title under the given ordinal.
+     *
+     * @param ordinal the task's ordinal
+     * @param title the task's title
+     */
+    void add(int ordinal, String title) {
+        for (long g : trigrams(title)) {
+            postings.compute(g, (k, p) -> {
+                if (p == null) p = new OrdinalSet();
+                p.add(ordinal);
+                return p;
+            });
+        }
+    }
+
+    /**
+     * Removes a title that was indexed under the given ordinal. Posting
+     * lists left empty are dropped, so renamed and deleted titles do not
+     * leave their trigrams behind.
+     *
+     * @param ordinal the task's ordinal
+     * @param title the title it was indexed with
+     */
+    void remove(int ordinal, String title) {
+        for (long g : trigrams(title)) {
+            postings.computeIfPresent(g, (k, p) -> {
+                p.remove(ordinal);
+                return p.isEmpty() ? null : p;
+            });
+        }
+    }
+
+    /** Drops every posting; used when the whole store is replaced. */
+    void clear() {
+        postings.clear();
+    }
+
+    /**
+     * Returns the ordinals of all titles that contain every trigram of the
+     * needle, in ascending order.
+     *
+     * @param needle the query, already folded with {@link #fold(String)}
+     * @return the candidate ordinals, or null if the needle is too short to use the index
+     */
+    int[] candidates(String needle) {
+        long[] grams = trigrams(needle);
+        if (grams.length == 0) return null;
+
+        OrdinalSet[] lists = new OrdinalSet[grams.length];
+        for (int i = 0; i < grams.length; i++) {
+            lists[i] = postings.get(grams[i]);
+            if (lists[i] == null) return new int[0];
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+
+        int[] result = lists[0].copy();
+        int n = result.length;
+        for (int i = 1; i < lists.length && n > 0; i++) {
+            int kept = 0;
+            for (int j = 0; j < n; j++)
+                if (lists[i].contains(result[j])) result[kept++] = result[j];
+            n = kept;
+        }
+        return (n == result.length) ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Estimates how many candidates {@link #candidates(String)} would return
+     * without intersecting anything: the length of the shortest posting list.
+     *
+     * @param needle the query, already folded
+     * @return the upper bound on candidates, or -1 if the needle is too short to use the index
+     */
+    int estimate(String needle) {
+        long[] grams = trigrams(needle);
+        if (grams.length == 0) return -1;
+        int min = Integer.MAX_VALUE;
+        for (long g : grams) {
+            OrdinalSet p = postings.get(g);
+            if (p == null) return 0;
+            min = Math.min(min, p.size());
+        }
+        return min;
+    }
+
+    /**
+     * Lower-cases a string one char at a time, the same way titles are folded
+     * for indexing and verification.
+     */
+    static String fold(String s) {
+        char[] out = new char[s.length()];
+        for (int i = 0; i < out.length; i++) out[i] = Character.toLowerCase(s.charAt(i));
+        return new String(out);
+    }
+
+    /**
+     * Case-insensitive substring test that does not allocate.
+     *
+     * @param title the text to search in
+     * @param needle the text to look for, already folded
+     * @return true if title contains needle ignoring case
+     */
+    static boolean containsFolded(String title, String needle) {
+        int n = needle.length(), last = title.length() - n;
+        outer:
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j < n; j++)
+                if (Character.toLowerCase(title.charAt(i + j)) != needle.charAt(j)) continue outer;
+            return true;
+        }
+        return false;
+    }
+
+    /** Distinct folded trigrams of s, each packed into a long. */
+    private static long[] trigrams(String s) {
+        int n = s.length() - 2;
+        if (n <= 0) return new long[0];
+        long[] grams = new long[n];
+        for (int i = 0; i < n; i++) {
+            grams[i] = ((long) Character.toLowerCase(s.charAt(i)) << 32)
+                     | ((long) Character.toLowerCase(s.charAt(i + 1)) << 16)
+                     | Character.toLowerCase(s.charAt(i + 2));
+        }
+        Arrays.sort(grams);
+        int distinct = 1;
+        for (int i = 1; i < n; i++) if (grams[i] != grams[distinct - 1]) grams[distinct++] = grams[i];
+        return (distinct == n) ? grams : Arrays.copyOf(grams, distinct);
+    }
+}
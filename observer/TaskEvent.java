@@ -0,0 +1,111 @@
+package observer;
+
+import model.Task;
+import model.TaskId;
+
+/**
+ * Describes one change to the task list, so observers can apply just that
+ * change instead of reloading everything.
+ *
+ * ADDED carries the new task, REMOVED the task as it was, and UPDATED both
+ * versions. BULK_LOADED means the whole list was replaced (for example by
+ * loading a file) and carries no task; observers should reload.
+ */
+public final class TaskEvent {
+
+    /** The kinds of change an event can describe. */
+    public enum Type { ADDED, UPDATED, REMOVED, BULK_LOADED }
+
+    private static final TaskEvent BULK_LOADED = new TaskEvent(Type.BULK_LOADED, null, null, null);
+
+    private final Type type;
+    private final TaskId id;
+    private final Task before;
+    private final Task after;
+
+    private TaskEvent(Type type, TaskId id, Task before, Task after) {
+        this.type = type;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    /**
+     * Creates an event for a task that was added.
+     *
+     * @param added the new task
+     * @return the event
+     */
+    public static TaskEvent added(Task added) {
+        return new TaskEvent(Type.ADDED, added.id(), null, added);
+    }
+
+    /**
+     * Creates an event for a task that changed.
+     *
+     * @param before the task before the change
+     * @param after the task after the change
+     * @return the event
+     */
+    public static TaskEvent updated(Task before, Task after) {
+        return new TaskEvent(Type.UPDATED, after.id(), before, after);
+    }
+
+    /**
+     * Creates an event for a task that was removed.
+     *
+     * @param removed the task as it was before removal
+     * @return the event
+     */
+    public static TaskEvent removed(Task removed) {
+        return new TaskEvent(Type.REMOVED, removed.id(), removed, null);
+    }
+
+    /**
+     * Returns the event for a wholesale replacement of the task list.
+     *
+     * @return the shared BULK_LOADED event
+     */
+    public static TaskEvent bulkLoaded() {
+        return BULK_LOADED;
+    }
+
+    /**
+     * Returns what kind of change this is.
+     *
+     * @return the event type
+     */
+    public Type type() { return type; }
+
+    /**
+     * Returns the id of the changed task.
+     *
+     * @return the task id, or null for BULK_LOADED
+     */
+    public TaskId id() { return id; }
+
+    /**
+     * Returns the task as it was before the change.
+     *
+     * @return the old task, or null for ADDED and BULK_LOADED
+     */
+    public Task before() { return before; }
+
+    /**
+     * Returns the task as it is after the change.
+     *
+     * @return the new task, or null for REMOVED and BULK_LOADED
+     */
+    public Task after() { return after; }
+
+    /**
+     * Returns a short description of the event, e.g. "UPDATED [ ] Buy milk".
+     *
+     * @return a string representing the event
+     */
+    @Override
+    public String toString() {
+        if (type == Type.BULK_LOADED) return type.name();
+        return type + " " + (after != null ? after : before);
+    }
+}
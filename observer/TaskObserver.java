@@ -1,15 +1,45 @@
 package observer;
 
+import java.util.List;
+
 /**
  * Interface used to observe changes in the task list.
  * 
  * Classes that implement this interface will be notified automatically
  * when tasks are added, edited, or deleted from the TaskStore.
+ *
+ * Observers that can apply a single change override
+ * {@link #onTaskEvent(TaskEvent)}; the others keep overriding
+ * {@link #onTasksChanged()}, which every event still triggers by default.
+ *
+ * The store delivers events on its own dispatcher thread, in batches
+ * collected over a short window. Observers that touch Swing components
+ * must hand the work to the event dispatch thread themselves.
  */
 public interface TaskObserver {
 
     /**
-     * This method runs automatically whenever the task list changes.
+     * This method runs automatically whenever the task list changes,
+     * unless {@link #onTaskEvent(TaskEvent)} is overridden.
+     */
+    default void onTasksChanged() {}
+
+    /**
+     * Called once for every change to the task list.
+     *
+     * @param event what changed
+     */
+    default void onTaskEvent(TaskEvent event) { onTasksChanged(); }
+
+    /**
+     * Called with every batch of changes, in the order they happened, with
+     * the changes of each task folded together (an add and its edits arrive
+     * as one add). By default each event is passed to
+     * {@link #onTaskEvent(TaskEvent)}.
+     *
+     * @param events the changes since the previous batch
      */
-    void onTasksChanged();
+    default void onTaskEvents(List<TaskEvent> events) {
+        for (TaskEvent e : events) onTaskEvent(e);
+    }
 }
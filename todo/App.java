@@ -8,39 +8,41 @@ import javax.swing.*;
 import java.awt.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Locale;
 
 /**
  * Main class of the To-Do List application.
  * 
  * This class is responsible for:
- * 1. Loading tasks from the saved file.
+ * 1. Opening the saved tasks (snapshot plus mutation log).
  * 2. Displaying the main application window.
- * 3. Handling auto-save and saving data when the app closes.
+ * 3. Writing a final snapshot when the app closes.
  */
 public class App {
 
     /** File path used to save and load all tasks. */
     private static final Path DATA_PATH = Paths.get("tasks.json");
 
-    /** Delay before the first auto-save starts (in milliseconds). */
-    private static final int AUTOSAVE_INITIAL_DELAY_MS = 2000;
-
-    /** Time interval between automatic saves (in milliseconds). */
-    private static final int AUTOSAVE_PERIOD_MS = 2000;
+    /**
+     * System property selecting how durable saves are
+     * (NONE, FSYNC_FILE or FSYNC_FILE_AND_DIR).
+     */
+    private static final String DURABILITY_PROPERTY = "todo.durability";
 
     /**
      * The main method that starts the To-Do List program.
-     * It loads tasks, shows the user interface, and starts auto-save.
+     * It opens the task store and shows the user interface. Every change
+     * is appended to the store's log as it happens, so no auto-save timer is needed.
      */
     public static void main(String[] args) {
         // Create a single shared TaskStore and its controller
         TaskStore store = TaskStore.getInstance();
         TaskController controller = new TaskController(store);
 
-        // Load saved tasks from file
-        store.loadFromJson(DATA_PATH);
+        store.setDurability(durability());
+
+        // Load saved tasks and replay any changes logged since the last snapshot
+        if (!store.open(DATA_PATH) && !startEmpty(store)) System.exit(1);
 
         // --- Create and show the main window ---
         SwingUtilities.invokeLater(() -> {
@@ -53,19 +55,41 @@ public class App {
             f.setVisible(true);
         });
 
-        // --- Auto-save timer ---
-        Timer autosave = new Timer(true);
-        autosave.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                store.saveToJson(DATA_PATH);
-            }
-        }, AUTOSAVE_INITIAL_DELAY_MS, AUTOSAVE_PERIOD_MS);
-
         // --- Save data when the program closes ---
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            autosave.cancel();
-            store.saveToJson(DATA_PATH);
-        }));
+        Runtime.getRuntime().addShutdownHook(new Thread(store::close));
+    }
+
+    /**
+     * Reads the durability level from {@value #DURABILITY_PROPERTY}. A value
+     * that names no level is reported and the default, FSYNC_FILE, is used.
+     */
+    private static TaskStore.Durability durability() {
+        String value = System.getProperty(DURABILITY_PROPERTY);
+        if (value == null) return TaskStore.Durability.FSYNC_FILE;
+        try {
+            return TaskStore.Durability.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown " + DURABILITY_PROPERTY + " \"" + value + "\"; using "
+                    + TaskStore.Durability.FSYNC_FILE);
+            return TaskStore.Durability.FSYNC_FILE;
+        }
+    }
+
+    /**
+     * Tells the user the saved tasks could not be loaded and offers to go
+     * on without the files that could not be read. The store has already
+     * renamed them, so going on does not overwrite them: the snapshot if it
+     * was unreadable, which leaves an empty list, or else just the log,
+     * which leaves the tasks of the last snapshot.
+     *
+     * @return true if the store was opened again and can be used
+     */
+    private static boolean startEmpty(TaskStore store) {
+        int answer = JOptionPane.showConfirmDialog(null,
+                "Your saved tasks (" + DATA_PATH + ") could not be loaded completely.\n"
+                        + "The files that could not be read were kept next to it with a .corrupt suffix.\n\n"
+                        + "Continue without them?",
+                "To-Do List", JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+        return answer == JOptionPane.YES_OPTION && store.open(DATA_PATH);
     }
 }
@@ -0,0 +1,172 @@
+package view;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.AbstractListModel;
+
+import model.LiveQuery;
+import model.Task;
+
+/**
+ * List model over a live query that only holds the rows around the part
+ * of the list being looked at.
+ *
+ * The JList asks for rows by index as it paints. The model keeps a window
+ * of {@link #WINDOW} rows fetched with {@link LiveQuery#page(int, int)}.
+ * When a row outside it is asked for, the model moves the wanted window to
+ * start a little above that row and asks for a fetch, which runs off the
+ * event dispatch thread like any other refresh; until it is shown, such
+ * rows are null, which the renderer paints as a "Loading…" placeholder
+ * and the actions on the selection allow for. Memory and the work per refresh therefore depend on
+ * the window, not on how many tasks match, and painting never waits for
+ * the query.
+ *
+ * A refresh is prepared with {@link #fetch()}, which may run on any
+ * thread, and shown with {@link #show(Window)} on the event dispatch
+ * thread. While the whole result fits in the window, the old and new rows
+ * are diffed so only the stretch that really changed is reported. For a
+ * larger result, rows outside the window are not known and are reported
+ * as changed; that is cheap, since the JList only repaints the visible
+ * ones. Every other method must only be used on the event dispatch thread,
+ * like any Swing model.
+ */
+public class TaskListModel extends AbstractListModel<Task> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Rows fetched at a time; comfortably more than fit on a screen. */
+    static final int WINDOW = 512;
+    /** Rows kept above the requested one, for scrolling back up. */
+    private static final int MARGIN = WINDOW / 4;
+
+    private final LiveQuery source;
+    /** Asks for a fetch and a show of its window, off the event dispatch thread. */
+    private final Runnable refetch;
+    private int size;
+    private List<Task> rows = List.of();
+    /** Index of rows.get(0). */
+    private int start;
+    /** Index the next fetched window starts at; volatile so fetch() can read it from any thread. */
+    private volatile int wanted;
+    /** Numbers fetches, so a window fetched earlier never replaces a later one. */
+    private final AtomicLong fetches = new AtomicLong();
+    private long shown;
+
+    /**
+     * @param source the live query whose result to show
+     * @param refetch called on the event dispatch thread when rows outside
+     *                the window are needed; it must arrange for {@link #fetch()}
+     *                to run off that thread and its window to be shown
+     */
+    public TaskListModel(LiveQuery source, Runnable refetch) {
+        this.source = source;
+        this.refetch = refetch;
+    }
+
+    /** The size of a result and the rows of its window, fetched together. */
+    public static final class Window {
+        private final long seq;
+        private final int size;
+        private final int start;
+        private final List<Task> rows;
+
+        private Window(long seq, int size, int start, List<Task> rows) {
+            this.seq = seq;
+            this.size = size;
+            this.start = start;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Reads the current result for the rows this model shows. Safe to call
+     * from any thread; this is where a changed result gets ordered.
+     *
+     * @return the window to pass to {@link #show(Window)}
+     */
+    public Window fetch() {
+        long seq = fetches.incrementAndGet();
+        int first = wanted;
+        return new Window(seq, source.count(), first, source.page(first, WINDOW));
+    }
+
+    /**
+     * Shows a fetched window and tells the JList which rows may have
+     * changed. A window older than the one already shown is ignored. Must
+     * be called on the event dispatch thread.
+     *
+     * @param w the window from {@link #fetch()}
+     */
+    public void show(Window w) {
+        if (w.seq < shown) return;
+        shown = w.seq;
+        List<Task> prev = rows;
+        int prevStart = start, oldSize = size;
+        size = w.size;
+        start = w.start;
+        rows = w.rows;
+
+        if (prevStart == 0 && start == 0 && prev.size() == oldSize && rows.size() == size) {
+            diff(prev, rows);
+            return;
+        }
+        // only the rows both windows show are known; assume the rest changed
+        int lo = 0, hi = Math.min(oldSize, size) - 1;
+        if (prevStart == start) {
+            int n = Math.min(prev.size(), rows.size());
+            if (start == 0)
+                while (lo <= hi && lo < n && prev.get(lo) == rows.get(lo)) lo++;
+            if (hi < start + n)
+                while (hi >= lo && hi >= start && prev.get(hi - start) == rows.get(hi - start)) hi--;
+        }
+        if (lo <= hi) fireContentsChanged(this, lo, hi);
+        if (size > oldSize) fireIntervalAdded(this, oldSize, size - 1);
+        else if (size < oldSize) fireIntervalRemoved(this, size, oldSize - 1);
+    }
+
+    /**
+     * Reports the change between two complete results: the old and new rows
+     * are compared from both ends by identity (tasks are immutable, so an
+     * unchanged row is the very same object) and only the differing stretch
+     * in the middle is reported.
+     */
+    private void diff(List<Task> prev, List<Task> next) {
+        int oldSize = prev.size(), newSize = next.size();
+        int head = 0, max = Math.min(oldSize, newSize);
+        while (head < max && prev.get(head) == next.get(head)) head++;
+        int tail = 0;
+        while (tail < max - head && prev.get(oldSize - 1 - tail) == next.get(newSize - 1 - tail)) tail++;
+
+        int oldMid = oldSize - head - tail, newMid = newSize - head - tail;
+        int changed = Math.min(oldMid, newMid);
+        if (changed > 0) fireContentsChanged(this, head, head + changed - 1);
+        if (newMid > oldMid) fireIntervalAdded(this, head + changed, head + newMid - 1);
+        else if (oldMid > newMid) fireIntervalRemoved(this, head + changed, head + oldMid - 1);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the task at the given row from the window fetched last. A row
+     * outside it comes back as null, and a window around it is asked for
+     * unless one already is. A row inside it that the result no longer has
+     * (it shrank since the last refresh, which is on its way) is null too.
+     */
+    @Override
+    public Task getElementAt(int index) {
+        int i = index - start;
+        if (i >= 0 && i < rows.size()) return rows.get(i);
+        if (index < start || index >= start + WINDOW) {
+            int w = wanted;
+            if (index < w || index >= w + WINDOW) {
+                wanted = Math.max(0, index - MARGIN);
+                refetch.run();
+            }
+        }
+        return null;
+    }
+}
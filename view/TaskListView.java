@@ -3,28 +3,52 @@ package view;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
-import javax.swing.DefaultListCellRenderer;
-import javax.swing.DefaultListModel;
+import javax.accessibility.AccessibleContext;
+import javax.accessibility.AccessibleRole;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JList;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.JTextField;
+import javax.swing.ListCellRenderer;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.UIManager;
+import javax.swing.border.Border;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
 import controller.TaskController;
+import model.LiveQuery;
 import model.Task;
 import model.TaskStore;
+import observer.TaskEvent;
 import observer.TaskObserver;
 
 /**
@@ -36,15 +60,20 @@ import observer.TaskObserver;
  */
 public class TaskListView extends JPanel implements TaskObserver {
 
+    private static final long serialVersionUID = 1L;
+
     /** Controller used to handle user actions like add, delete, and edit. */
     private final TaskController controller;
 
     /** Shared TaskStore instance that contains all tasks. */
     private final TaskStore store;
 
-    /** List model and UI list that display all tasks. */
-    private final DefaultListModel<Task> listModel = new DefaultListModel<>();
-    private final JList<Task> list = new JList<>(listModel);
+    /** Result of the current search and filter, kept up to date by the store. */
+    private final LiveQuery results;
+
+    /** List model and UI list that display the matching tasks. */
+    private final TaskListModel listModel;
+    private final JList<Task> list;
 
     /** Buttons for user actions. */
     private final JButton addBtn = new JButton("Add");
@@ -57,9 +86,40 @@ public class TaskListView extends JPanel implements TaskObserver {
     private final JComboBox<TaskStore.Filter> filterBox =
             new JComboBox<>(TaskStore.Filter.values());
 
+    /** Title suggestions shown under the search field while typing. */
+    private final JPopupMenu suggestions = new JPopupMenu();
+    private static final int MAX_SUGGESTIONS = 8;
+
+    /** Title of a typical task; its rendered size is used for every row. */
+    private static final String PROTOTYPE_TITLE = "Prepare the slides for the monthly review";
+
     /** Status label used to show small updates (e.g. "Task added"). */
     private final JLabel status = new JLabel("");
 
+    /** Completion summary (e.g. "3 of 10 done"), shown next to the status. */
+    private final JLabel progress = new JLabel("");
+
+    /** Window waiting to be shown on the event dispatch thread, if any. */
+    private final AtomicReference<TaskListModel.Window> latest = new AtomicReference<>();
+
+    /** How long typing has to pause before the search runs. */
+    private static final int SEARCH_DELAY_MS = 150;
+    private final Timer searchTimer = new Timer(SEARCH_DELAY_MS, e -> reload());
+
+    /** Runs searches off the event dispatch thread, one at a time. */
+    private static final ExecutorService SEARCHES = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TaskListView-search");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Moves "today" forward at midnight, for the highlighting and the date filters. */
+    private final TodayRenderer renderer = new TodayRenderer();
+    private final Timer midnightTimer = new Timer(0, e -> newDay());
+
+    /** Bumped for every search; only the newest one may show its result. */
+    private final AtomicInteger generation = new AtomicInteger();
+    private Future<?> pending;
+
     /**
      * Creates the task list view and connects it with the controller and store.
      * It also sets up the layout and event listeners for the UI.
@@ -69,6 +129,9 @@ public class TaskListView extends JPanel implements TaskObserver {
     public TaskListView(TaskController controller){
         this.controller = controller;
         this.store = TaskStore.getInstance();
+        this.results = store.liveQuery(TaskStore.queryFor("", TaskStore.Filter.ALL));
+        this.listModel = new TaskListModel(results, this::refetch);
+        this.list = new JList<>(listModel);
 
         setLayout(new BorderLayout());
 
@@ -86,14 +149,24 @@ public class TaskListView extends JPanel implements TaskObserver {
         // Add all UI parts to the layout
         add(top, BorderLayout.NORTH);
         add(new JScrollPane(list), BorderLayout.CENTER);
-        add(status, BorderLayout.SOUTH);
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(status, BorderLayout.CENTER);
+        bottom.add(progress, BorderLayout.EAST);
+        add(bottom, BorderLayout.SOUTH);
 
         list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        list.setCellRenderer(new TodayRenderer());
+        list.setCellRenderer(renderer);
+        // every row gets the prototype's size, so the list never measures its tasks
+        list.setPrototypeCellValue(new Task(null, PROTOTYPE_TITLE, LocalDate.now(), false));
+        // keep the caret in the search field while suggestions are open
+        suggestions.setFocusable(false);
+        searchTimer.setRepeats(false);
+        midnightTimer.setRepeats(false);
+        scheduleMidnight();
 
         store.addObserver(this);
 
-        reload();
+        showResults();
         wireActions();
         wireSearch();
         wireFilter();
@@ -122,16 +195,16 @@ public class TaskListView extends JPanel implements TaskObserver {
 
         // Delete selected task
         delBtn.addActionListener(e -> {
-            Task sel = list.getSelectedValue();
-            if (sel == null) { JOptionPane.showMessageDialog(this, "Select a task first."); return; }
+            Task sel = selectedTask();
+            if (sel == null) return;
             controller.deleteTask(sel.id());
             status.setText("Deleted: " + sel.title());
         });
 
         // Toggle task completion
         toggleBtn.addActionListener(e -> {
-            Task sel = list.getSelectedValue();
-            if (sel == null) { JOptionPane.showMessageDialog(this, "Select a task first."); return; }
+            Task sel = selectedTask();
+            if (sel == null) return;
             boolean willBeCompleted = !sel.completed();
             controller.toggleCompleted(sel.id());
             status.setText(willBeCompleted ? ("Completed: " + sel.title()) : ("Reopened: " + sel.title()));
@@ -139,8 +212,8 @@ public class TaskListView extends JPanel implements TaskObserver {
 
         // Edit selected task title
         editBtn.addActionListener(e -> {
-            Task sel = list.getSelectedValue();
-            if (sel == null) { JOptionPane.showMessageDialog(this, "Select a task first."); return; }
+            Task sel = selectedTask();
+            if (sel == null) return;
             String newTitle = (String) JOptionPane.showInputDialog(
                     this, "Edit title:", "Edit Task",
                     JOptionPane.PLAIN_MESSAGE, null, null, sel.title()
@@ -162,11 +235,27 @@ public class TaskListView extends JPanel implements TaskObserver {
     }
 
     /**
-     * Updates the list of tasks whenever the search text changes.
+     * Returns the selected task for the actions on it. The list model gives
+     * null for a row it is still fetching, so a selected row can be null
+     * too; the user is told either way.
+     *
+     * @return the selected task, or null after telling the user why there is none
+     */
+    private Task selectedTask(){
+        Task sel = list.getSelectedValue();
+        if (sel != null) return sel;
+        String msg = (list.getSelectedIndex() < 0) ? "Select a task first." : "The task is still loading; try again in a moment.";
+        JOptionPane.showMessageDialog(this, msg);
+        return null;
+    }
+
+    /**
+     * Updates the title suggestions whenever the search text changes, and
+     * the list of tasks once typing pauses.
      */
     private void wireSearch(){
         DocumentListener dl = new DocumentListener() {
-            private void changed(){ reload(); }
+            private void changed(){ searchTimer.restart(); suggest(); }
             @Override public void insertUpdate(DocumentEvent e){ changed(); }
             @Override public void removeUpdate(DocumentEvent e){ changed(); }
             @Override public void changedUpdate(DocumentEvent e){ changed(); }
@@ -174,61 +263,263 @@ public class TaskListView extends JPanel implements TaskObserver {
         searchField.getDocument().addDocumentListener(dl);
     }
 
+    /**
+     * Shows titles starting with the search text in a popup under the
+     * search field; picking one copies it into the field.
+     */
+    private void suggest(){
+        String q = searchField.getText();
+        List<String> titles = store.completeTitle(q, MAX_SUGGESTIONS);
+        if (titles.isEmpty() || (titles.size() == 1 && titles.get(0).equalsIgnoreCase(q.strip()))
+                || !searchField.isShowing()) {
+            suggestions.setVisible(false);
+            return;
+        }
+        suggestions.setVisible(false);
+        suggestions.removeAll();
+        for (String title : titles) {
+            JMenuItem item = new JMenuItem(title);
+            item.addActionListener(e -> searchField.setText(title));
+            suggestions.add(item);
+        }
+        suggestions.show(searchField, 0, searchField.getHeight());
+    }
+
     /**
      * Updates the task list when the user changes the filter.
      */
-    private void wireFilter(){ filterBox.addActionListener(e -> reload()); }
+    private void wireFilter(){
+        filterBox.addActionListener(e -> {
+            searchTimer.stop();
+            reload();
+        });
+    }
 
     /**
-     * Reloads the displayed tasks according to the search and filter.
+     * Points the live result at the current search and filter on the
+     * search thread and shows it once it is ready. Typing more of a search
+     * only narrows the previous result.
+     *
+     * A search that has not started yet when a newer one comes in is
+     * dropped, and the result of one that was already running is not shown,
+     * so the list never goes back to an older search.
      */
     private void reload(){
-        String q = (searchField == null) ? "" : searchField.getText();
+        String q = searchField.getText();
         TaskStore.Filter f = (filterBox.getSelectedItem() != null)
                 ? (TaskStore.Filter) filterBox.getSelectedItem()
                 : TaskStore.Filter.ALL;
-        refresh(store.query(q, f));
+        int gen = generation.incrementAndGet();
+        if (pending != null) pending.cancel(false);
+        pending = SEARCHES.submit(() -> {
+            if (gen != generation.get()) return;
+            results.refine(TaskStore.queryFor(q, f));
+            TaskListModel.Window w = listModel.fetch();
+            if (gen == generation.get()) publish(w);
+        });
+    }
+
+    /**
+     * Shows the live result, which the store has already brought up to date.
+     */
+    private void showResults(){
+        refetch();
+        showProgress();
+    }
+
+    /** Fetches the rows the list wants on the search thread and shows them. */
+    private void refetch(){
+        SEARCHES.execute(() -> publish(listModel.fetch()));
+    }
+
+    /**
+     * Hands a window fetched off the event dispatch thread to the list. If
+     * the EDT has not got to the previous one yet, this one replaces it.
+     */
+    private void publish(TaskListModel.Window w){
+        if (latest.getAndSet(w) == null) {
+            SwingUtilities.invokeLater(() -> {
+                listModel.show(latest.getAndSet(null));
+                showProgress();
+            });
+        }
+    }
+
+    private void showProgress(){
+        int done = store.completedCount();
+        progress.setText(done + " of " + (done + store.pendingCount()) + " done");
+    }
+
+    /**
+     * Called by the store's dispatcher thread with each batch of changes.
+     * The visible rows are fetched here, so a changed result is ordered off
+     * the event dispatch thread, and then shown on it.
+     */
+    @Override public void onTaskEvents(List<TaskEvent> events) {
+        publish(listModel.fetch());
     }
 
     /**
-     * Updates the list model with the provided tasks.
+     * Arms the midnight timer for the start of the next day in the system
+     * time zone.
      */
-    private void refresh(List<Task> tasks){
-        listModel.clear();
-        for (Task t: tasks) listModel.addElement(t);
+    private void scheduleMidnight(){
+        ZonedDateTime midnight = LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault());
+        long delay = Duration.between(ZonedDateTime.now(), midnight).toMillis() + 1;
+        midnightTimer.setInitialDelay((int) Math.min(Math.max(delay, 1), Integer.MAX_VALUE));
+        midnightTimer.restart();
     }
 
     /**
-     * Called when the data in the store changes.
+     * Highlights the new day's tasks and runs the search again, since the
+     * date filters were fixed to the previous day.
      */
-    @Override public void onTasksChanged() { reload(); }
+    private void newDay(){
+        renderer.setToday(LocalDate.now());
+        list.repaint();
+        reload();
+        scheduleMidnight();
+    }
 
     /**
      * Highlights today’s tasks in blue and completed tasks in gray.
+     *
+     * Painting asks for a renderer for every visible row on every frame, so
+     * handing out the component only records the row: nothing reads the
+     * clock, builds strings, fonts or colors, or touches component
+     * properties, whose setters fire events and queue repaints. The row is
+     * drawn in paintComponent, which the list calls once per visible cell.
+     * "Today" is set by the view's midnight timer, the fonts are only
+     * derived again when the list's font changes, and the text of each due
+     * date is built once.
      */
-    private static class TodayRenderer extends DefaultListCellRenderer {
+    private static class TodayRenderer extends JComponent implements ListCellRenderer<Task> {
+        private static final long serialVersionUID = 1L;
+        private static final Color TODAY = new Color(0, 102, 204);
+        private static final String DONE = "[✓] ", OPEN = "[ ] ";
+        /** Shown for a row the list model has not fetched yet. */
+        private static final String LOADING = "Loading…";
+        /** Space around the text, as the default renderer leaves it. */
+        private static final int GAP = 1;
+
+        private LocalDate today = LocalDate.now();
+        /** The list font the cached ones were derived from. */
+        private Font source, plain, bold;
+        /** " (date)" suffixes drawn so far; a list shows only a few distinct dates. */
+        private final Map<LocalDate, String> suffixes = new HashMap<>();
+        private Border focusBorder;
+
+        /** The row being painted, as recorded by getListCellRendererComponent. */
+        private Task task;
+        private Color fg, bg;
+        private Font font;
+        private boolean focused;
+
+        TodayRenderer(){
+            setOpaque(true);
+            updateUI();
+        }
+
+        void setToday(LocalDate day){ today = day; }
+
         @Override
-        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+        public void updateUI(){
+            super.updateUI();
+            focusBorder = UIManager.getBorder("List.focusCellHighlightBorder");
+        }
+
+        @Override
+        public Component getListCellRendererComponent(JList<? extends Task> list, Task value, int index,
                                                       boolean isSelected, boolean cellHasFocus) {
-            JLabel c = (JLabel) super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
-            if (value instanceof Task) {
-                Task t = (Task) value;
-                LocalDate due = t.Date();
-                boolean isToday = (due != null && due.equals(LocalDate.now()));
-                if (!isSelected) {
-                    if (t.completed()) {
-                        c.setForeground(Color.GRAY);
-                        c.setFont(c.getFont().deriveFont(Font.PLAIN));
-                    } else if (isToday) {
-                        c.setForeground(new Color(0, 102, 204));
-                        c.setFont(c.getFont().deriveFont(Font.BOLD));
-                    } else {
-                        c.setForeground(Color.BLACK);
-                        c.setFont(c.getFont().deriveFont(Font.PLAIN));
+            Font base = list.getFont();
+            if (base != source) {
+                source = base;
+                plain = base.getStyle() == Font.PLAIN ? base : base.deriveFont(Font.PLAIN);
+                bold = base.deriveFont(Font.BOLD);
+            }
+            task = value;
+            focused = cellHasFocus;
+            font = plain;
+            if (isSelected) {
+                fg = list.getSelectionForeground();
+                bg = list.getSelectionBackground();
+                return this;
+            }
+            bg = list.getBackground();
+            if (value == null || value.completed()) {
+                fg = Color.GRAY;
+            } else if (today.equals(value.Date())) {
+                fg = TODAY;
+                font = bold;
+            } else {
+                fg = Color.BLACK;
+            }
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(bg);
+            g.fillRect(0, 0, getWidth(), getHeight());
+            g.setColor(fg);
+            g.setFont(font);
+            FontMetrics fm = g.getFontMetrics();
+            int x = GAP;
+            int y = (getHeight() - fm.getHeight()) / 2 + fm.getAscent();
+            if (task == null) {
+                g.drawString(LOADING, x, y);
+            } else {
+                String prefix = task.completed() ? DONE : OPEN;
+                g.drawString(prefix, x, y);
+                x += fm.stringWidth(prefix);
+                g.drawString(task.title(), x, y);
+                if (task.Date() != null) g.drawString(suffix(task.Date()), x + fm.stringWidth(task.title()), y);
+            }
+            if (focused && focusBorder != null) focusBorder.paintBorder(this, g, 0, 0, getWidth(), getHeight());
+        }
+
+        /** The size of the recorded row; the list asks for it once, for its prototype. */
+        @Override
+        public Dimension getPreferredSize() {
+            FontMetrics fm = getFontMetrics(font != null ? font : getFont());
+            int width = fm.stringWidth(LOADING);
+            if (task != null) {
+                width = fm.stringWidth(task.completed() ? DONE : OPEN) + fm.stringWidth(task.title());
+                if (task.Date() != null) width += fm.stringWidth(suffix(task.Date()));
+            }
+            return new Dimension(width + 2 * GAP, fm.getHeight() + 2 * GAP);
+        }
+
+        private String suffix(LocalDate date) {
+            return suffixes.computeIfAbsent(date, d -> " (" + d + ")");
+        }
+
+        @Override
+        public AccessibleContext getAccessibleContext() {
+            if (accessibleContext == null) {
+                accessibleContext = new AccessibleJComponent() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    public String getAccessibleName() {
+                        return (task == null) ? LOADING : task.toString();
+                    }
+
+                    @Override
+                    public AccessibleRole getAccessibleRole() {
+                        return AccessibleRole.LABEL;
                     }
-                }
+                };
             }
-            return c;
+            return accessibleContext;
         }
+
+        // A renderer is only stamped, never shown, so like DefaultListCellRenderer
+        // it skips the layout and repaint requests its placement triggers.
+        @Override public void invalidate() {}
+        @Override public void validate() {}
+        @Override public void revalidate() {}
+        @Override public void repaint(long tm, int x, int y, int width, int height) {}
+        @Override public void repaint(Rectangle r) {}
     }
 }